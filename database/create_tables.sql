@@ -35,6 +35,9 @@ CREATE TABLE IF NOT EXISTS sign_key(
      FOREIGN KEY(cid_id) REFERENCES cid(cid_id)
 );
 
+ALTER TABLE sign_key ADD COLUMN IF NOT EXISTS public_key BYTEA;
+ALTER TABLE sign_key ADD COLUMN IF NOT EXISTS key_thumbprint TEXT;
+
 -- -----------------------------------------------------------------------
 -- ADDRESS
 -- -----------------------------------------------------------------------
@@ -47,6 +50,8 @@ CREATE TABLE IF NOT EXISTS address(
     UNIQUE(cid_id, address)
 );
 
+CREATE INDEX IF NOT EXISTS address_address_idx ON address(address);
+
 -- -----------------------------------------------------------------------
 -- JWKS
 -- -----------------------------------------------------------------------
@@ -58,6 +63,8 @@ CREATE TABLE IF NOT EXISTS jwks(
     created_utc TIMESTAMP WITH TIME ZONE NOT NULL
 );
 
+ALTER TABLE jwks ADD COLUMN IF NOT EXISTS expires_utc TIMESTAMP WITH TIME ZONE;
+
 -- -----------------------------------------------------------------------
 -- USAGE
 -- -----------------------------------------------------------------------
@@ -68,4 +75,49 @@ CREATE TABLE IF NOT EXISTS usage(
     modified_utc TIMESTAMP WITH TIME ZONE NOT NULL,
     created_utc TIMESTAMP WITH TIME ZONE NOT NULL,
     FOREIGN KEY(config_id) REFERENCES config(config_id)
+);
+
+ALTER TABLE usage ADD COLUMN IF NOT EXISTS day DATE;
+UPDATE usage SET day = (created_utc AT TIME ZONE 'UTC')::date WHERE day IS NULL;
+DELETE FROM usage u USING usage d
+    WHERE u.config_id = d.config_id AND u.day = d.day AND u.usage_id < d.usage_id;
+CREATE UNIQUE INDEX IF NOT EXISTS usage_config_day_idx ON usage(config_id, day);
+
+CREATE TABLE IF NOT EXISTS usage_outbox(
+    outbox_id BIGSERIAL PRIMARY KEY,
+    config_id BIGINT NOT NULL,
+    active BIGINT NOT NULL,
+    added BIGINT NOT NULL,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    batch_key TEXT,
+    next_attempt_utc TIMESTAMP WITH TIME ZONE NOT NULL,
+    created_utc TIMESTAMP WITH TIME ZONE NOT NULL,
+    FOREIGN KEY(config_id) REFERENCES config(config_id)
+);
+
+CREATE INDEX IF NOT EXISTS usage_outbox_next_attempt_idx ON usage_outbox(next_attempt_utc);
+
+-- -----------------------------------------------------------------------
+-- CHANGE LOG
+-- -----------------------------------------------------------------------
+CREATE TABLE IF NOT EXISTS change_log(
+    seq BIGSERIAL PRIMARY KEY,
+    operation TEXT NOT NULL,
+    app_id TEXT NOT NULL,
+    customer_id TEXT NOT NULL,
+    address BYTEA,
+    created_utc TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS change_log_app_seq_idx ON change_log(app_id, seq);
+
+CREATE TABLE IF NOT EXISTS change_cursor(
+    consumer TEXT PRIMARY KEY,
+    seq BIGINT NOT NULL,
+    modified_utc TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS change_retention(
+    retention_id INTEGER PRIMARY KEY,
+    pruned_seq BIGINT NOT NULL
 );
\ No newline at end of file
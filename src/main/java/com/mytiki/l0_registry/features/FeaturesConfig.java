@@ -6,6 +6,7 @@
 package com.mytiki.l0_registry.features;
 
 import com.mytiki.l0_registry.features.latest.address.AddressConfig;
+import com.mytiki.l0_registry.features.latest.change.ChangeConfig;
 import com.mytiki.l0_registry.features.latest.config.ConfigConfig;
 import com.mytiki.l0_registry.features.latest.id.IdConfig;
 import com.mytiki.l0_registry.features.latest.jwks.JwksConfig;
@@ -19,6 +20,7 @@ import org.springframework.context.annotation.Import;
         AddressConfig.class,
         SignConfig.class,
         JwksConfig.class,
-        UsageConfig.class
+        UsageConfig.class,
+        ChangeConfig.class
 })
 public class FeaturesConfig {}
@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.address;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AddressBatchRepository {
+    private static final String SELECT_IDS =
+            "SELECT a.address, c.customer_id FROM address a " +
+            "JOIN cid c ON c.cid_id = a.cid_id " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "WHERE g.app_id = ? AND a.address = ANY(?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public AddressBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public Map<ByteBuffer, String> findIds(String appId, Collection<byte[]> addresses){
+        Map<ByteBuffer, String> found = new HashMap<>(addresses.size());
+        if(addresses.isEmpty()) return found;
+        byte[][] array = addresses.toArray(byte[][]::new);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_IDS);
+            ps.setString(1, appId);
+            ps.setArray(2, con.createArrayOf("bytea", array));
+            return ps;
+        }, rs -> { found.put(ByteBuffer.wrap(rs.getBytes(1)), rs.getString(2)); });
+        return found;
+    }
+}
@@ -6,11 +6,23 @@
 package com.mytiki.l0_registry.features.latest.address;
 
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mytiki.l0_registry.features.latest.change.ChangeService;
+import com.mytiki.l0_registry.utilities.AppBloom;
+import com.mytiki.l0_registry.utilities.B64Url;
 import com.mytiki.l0_registry.utilities.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
 
 @EnableJpaRepositories(AddressConfig.PACKAGE_PATH)
 @EntityScan(AddressConfig.PACKAGE_PATH)
@@ -18,8 +30,78 @@ public class AddressConfig {
     public static final String PACKAGE_PATH = Constants.PACKAGE_FEATURES_LATEST_DOT_PATH + ".address";
 
     @Bean
-    public AddressService addressService(@Autowired AddressRepository repository){
-        return new AddressService(repository);
+    public AddressIndex addressIndex(@Value("${com.mytiki.l0_registry.address.index.capacity}") int capacity){
+        return new AddressIndex(capacity);
+    }
+
+    @Bean
+    public AddressIndexRepository addressIndexRepository(
+            @Autowired JdbcTemplate jdbcTemplate,
+            @Autowired TransactionTemplate transactionTemplate,
+            @Value("${com.mytiki.l0_registry.address.index.fetch_size}") int fetchSize){
+        return new AddressIndexRepository(jdbcTemplate, transactionTemplate, fetchSize);
+    }
+
+    @Bean
+    public AddressIndexer addressIndexer(
+            @Autowired AddressIndex index,
+            @Autowired AddressIndexRepository repository,
+            @Value("${com.mytiki.l0_registry.address.index.snapshot.path}") String snapshot,
+            @Value("${com.mytiki.l0_registry.address.index.snapshot.interval_seconds}") long intervalSeconds,
+            @Value("${com.mytiki.l0_registry.address.index.snapshot.max_age_seconds}") long maxAgeSeconds,
+            @Autowired MeterRegistry meterRegistry,
+            @Autowired ChangeService changeService){
+        return new AddressIndexer(index, repository, changeService, Path.of(snapshot),
+                Duration.ofSeconds(intervalSeconds), Duration.ofSeconds(maxAgeSeconds), meterRegistry);
+    }
+
+    @Bean
+    public AppBloom addressBloom(
+            @Autowired AddressIndexRepository repository,
+            @Value("${com.mytiki.l0_registry.address.bloom.expected}") long expected,
+            @Value("${com.mytiki.l0_registry.address.bloom.fpp}") double fpp,
+            @Value("${com.mytiki.l0_registry.address.bloom.max_bytes}") long maxBytes,
+            @Value("${com.mytiki.l0_registry.address.bloom.refresh_seconds}") long refreshSeconds,
+            @Value("${com.mytiki.l0_registry.address.bloom.max_lag_ms}") long maxLagMs,
+            @Autowired MeterRegistry meterRegistry,
+            @Autowired ChangeService changeService){
+        long position = changeService.position();
+        AppBloom addressBloom = new AppBloom("address", expected, fpp, maxBytes, Duration.ofSeconds(refreshSeconds),
+                (bloom, after) -> repository.load(bloom, after), () -> changeService.head(Duration.ofMillis(maxLagMs)), meterRegistry);
+        addressBloom.advance(position);
+        changeService.listen(changes -> {
+            changes.stream()
+                    .filter(change -> ChangeService.OPERATION_ADD.equals(change.getOperation()))
+                    .filter(change -> change.getAddress() != null)
+                    .forEach(change -> addressBloom.put(change.getAppId(), B64Url.decode(change.getAddress())));
+            addressBloom.advance(changes.get(changes.size() - 1).getSeq());
+        }, position);
+        return addressBloom;
+    }
+
+    @Bean
+    public AddressBatchRepository addressBatchRepository(@Autowired JdbcTemplate jdbcTemplate){
+        return new AddressBatchRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public AddressExportRepository addressExportRepository(
+            @Autowired JdbcTemplate jdbcTemplate,
+            @Autowired TransactionTemplate transactionTemplate,
+            @Value("${com.mytiki.l0_registry.address.export.fetch_size}") int fetchSize){
+        return new AddressExportRepository(jdbcTemplate, transactionTemplate, fetchSize);
+    }
+
+    @Bean
+    public AddressService addressService(
+            @Autowired AddressRepository repository,
+            @Autowired AddressBatchRepository batchRepository,
+            @Autowired AddressExportRepository exportRepository,
+            @Autowired ObjectMapper objectMapper,
+            @Autowired AddressIndexer indexer,
+            @Autowired @Qualifier("addressBloom") AppBloom bloom,
+            @Value("${com.mytiki.l0_registry.address.batch.max}") int batchMax){
+        return new AddressService(repository, batchRepository, exportRepository, objectMapper, indexer, bloom, batchMax);
     }
 
     @Bean
@@ -14,16 +14,24 @@ import com.mytiki.spring_rest_api.ApiConstants;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.security.Principal;
+import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping(value = AddressController.PATH_CONTROLLER)
 public class AddressController {
 
     public static final String PATH_CONTROLLER = ApiConstants.API_LATEST_ROUTE + "address";
+    public static final String PATH_BATCH = "/batch";
+    public static final String PATH_EXPORT = "/export";
+    public static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
 
     private final AddressService service;
 
@@ -39,4 +47,34 @@ public class AddressController {
             @RequestParam(name = "app-id") String appId) {
         return service.getId(address, appId);
     }
+
+    @Secured({"ROLE_L0_INDEX", "SCOPE_internal:read"})
+    @Operation(hidden = true)
+    @RequestMapping(method = RequestMethod.POST, path = PATH_BATCH)
+    public Map<String, String> postBatch(
+            @RequestParam(name = "app-id") String appId,
+            @RequestBody List<String> body) {
+        return service.getIds(body, appId);
+    }
+
+    @Secured({"ROLE_L0_INDEX", "SCOPE_internal:read"})
+    @Operation(hidden = true)
+    @RequestMapping(method = RequestMethod.GET, path = PATH_EXPORT, produces = MEDIA_TYPE_NDJSON)
+    public ResponseEntity<StreamingResponseBody> getExport(
+            @RequestParam(name = "app-id") String appId,
+            @RequestParam(name = "cursor", required = false) String cursor) {
+        long after = service.decodeCursor(cursor);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(MEDIA_TYPE_NDJSON))
+                .body(out -> service.export(appId, after, out));
+    }
+
+    @Secured({"ROLE_L0_INDEX", "SCOPE_internal:read"})
+    @Operation(hidden = true)
+    @RequestMapping(method = RequestMethod.HEAD, path = "/{address}")
+    public ResponseEntity<Void> head(
+            @PathVariable String address,
+            @RequestParam(name = "app-id") String appId) {
+        return service.exists(address, appId) ? ResponseEntity.ok().build() : ResponseEntity.notFound().build();
+    }
 }
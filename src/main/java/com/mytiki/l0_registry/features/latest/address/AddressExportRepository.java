@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.address;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+public class AddressExportRepository {
+    private static final String SELECT_APP_AFTER =
+            "SELECT a.address_id, a.address, c.customer_id FROM address a " +
+            "JOIN cid c ON c.cid_id = a.cid_id " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "WHERE g.app_id = ? AND a.address_id > ? ORDER BY a.address_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+
+    public AddressExportRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    public void export(String appId, long after, RowCallbackHandler handler) {
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_APP_AFTER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setString(1, appId);
+            ps.setLong(2, after);
+            return ps;
+        }, handler));
+    }
+}
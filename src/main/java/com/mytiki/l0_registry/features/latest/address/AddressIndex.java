@@ -0,0 +1,326 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.address;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+public class AddressIndex {
+    public static final int ADDRESS_LENGTH = 32;
+
+    private static final int MAGIC = 0x4C304149;
+    private static final int VERSION = 2;
+    private static final int HEADER = 40;
+    private static final int SLOT = 56;
+    private static final int OFF_APP_HASH = 32;
+    private static final int OFF_ARENA = 40;
+    private static final int OFF_APP_LEN = 44;
+    private static final int OFF_ID_LEN = 46;
+    private static final int OFF_STATE = 48;
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+    private static final double LOAD_FACTOR = 0.7;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private ByteBuffer table;
+    private ByteBuffer arena;
+    private int capacity;
+    private int size;
+    private int deleted;
+    private int arenaUsed;
+    private long highWater;
+    private long seq;
+
+    public AddressIndex(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+        this.table = ByteBuffer.allocateDirect(this.capacity * SLOT);
+        this.arena = ByteBuffer.allocateDirect(this.capacity * 16);
+    }
+
+    public String get(String appId, byte[] address) {
+        if(address.length != ADDRESS_LENGTH) return null;
+        byte[] app = appId.getBytes(StandardCharsets.UTF_8);
+        long appHash = hash(app);
+        lock.readLock().lock();
+        try {
+            int slot = locate(address, app, appHash);
+            if(slot < 0) return null;
+            int base = slot * SLOT;
+            byte[] id = new byte[table.getShort(base + OFF_ID_LEN)];
+            arena.get(table.getInt(base + OFF_ARENA) + app.length, id);
+            return new String(id, StandardCharsets.UTF_8);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void put(String appId, byte[] address, String customerId) {
+        if(address.length != ADDRESS_LENGTH) return;
+        byte[] app = appId.getBytes(StandardCharsets.UTF_8);
+        byte[] id = customerId.getBytes(StandardCharsets.UTF_8);
+        long appHash = hash(app);
+        lock.writeLock().lock();
+        try {
+            if(size + deleted + 1 > capacity * LOAD_FACTOR)
+                rehash(size + 1 > capacity * LOAD_FACTOR / 2 ? capacity << 1 : capacity);
+            int slot = locate(address, app, appHash);
+            if(slot >= 0) {
+                int base = slot * SLOT;
+                if(table.getShort(base + OFF_ID_LEN) == id.length &&
+                        matches(arena, table.getInt(base + OFF_ARENA) + app.length, id)) return;
+                table.putInt(base + OFF_ARENA, append(app, id));
+                table.putShort(base + OFF_ID_LEN, (short) id.length);
+            } else {
+                slot = -slot - 1;
+                if(table.get(slot * SLOT + OFF_STATE) == DELETED) deleted--;
+                write(slot, address, appHash, append(app, id), app.length, id.length);
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(String appId, byte[] address) {
+        if(address.length != ADDRESS_LENGTH) return;
+        byte[] app = appId.getBytes(StandardCharsets.UTF_8);
+        long appHash = hash(app);
+        lock.writeLock().lock();
+        try {
+            int slot = locate(address, app, appHash);
+            if(slot >= 0) {
+                table.put(slot * SLOT + OFF_STATE, DELETED);
+                size--;
+                deleted++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long bytes() {
+        lock.readLock().lock();
+        try {
+            return (long) table.capacity() + arena.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getHighWater() {
+        lock.readLock().lock();
+        try {
+            return highWater;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setHighWater(long highWater) {
+        lock.writeLock().lock();
+        try {
+            this.highWater = Math.max(this.highWater, highWater);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public long getSeq() {
+        lock.readLock().lock();
+        try {
+            return seq;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void setSeq(long seq) {
+        lock.writeLock().lock();
+        try {
+            this.seq = seq;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            table = ByteBuffer.allocateDirect(capacity * SLOT);
+            arena = ByteBuffer.allocateDirect(capacity * 16);
+            size = 0;
+            deleted = 0;
+            arenaUsed = 0;
+            highWater = 0;
+            seq = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void write(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        lock.readLock().lock();
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    HEADER + (long) capacity * SLOT + arenaUsed);
+            out.putInt(MAGIC).putInt(VERSION).putInt(capacity).putInt(size).putInt(deleted).putInt(arenaUsed)
+                    .putLong(highWater).putLong(seq);
+            out.put(table.duplicate().clear());
+            out.put(arena.duplicate().clear().limit(arenaUsed));
+            out.force();
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public void read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(in.remaining() < HEADER || in.getInt() != MAGIC || in.getInt() != VERSION)
+                throw new IOException("Unrecognized address index snapshot");
+            int capacity = in.getInt();
+            int size = in.getInt();
+            int deleted = in.getInt();
+            int arenaUsed = in.getInt();
+            long highWater = in.getLong();
+            long seq = in.getLong();
+            if(Integer.bitCount(capacity) != 1 || in.remaining() != (long) capacity * SLOT + arenaUsed)
+                throw new IOException("Truncated address index snapshot");
+            ByteBuffer table = ByteBuffer.allocateDirect(capacity * SLOT);
+            table.put(in.slice(HEADER, capacity * SLOT)).clear();
+            ByteBuffer arena = ByteBuffer.allocateDirect(Math.max(arenaUsed * 2, capacity * 16));
+            arena.put(in.slice(HEADER + capacity * SLOT, arenaUsed)).clear();
+            lock.writeLock().lock();
+            try {
+                this.table = table;
+                this.arena = arena;
+                this.capacity = capacity;
+                this.size = size;
+                this.deleted = deleted;
+                this.arenaUsed = arenaUsed;
+                this.highWater = highWater;
+                this.seq = seq;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private int locate(byte[] address, byte[] app, long appHash) {
+        int mask = capacity - 1;
+        int slot = (int) mix(address, appHash) & mask;
+        int tombstone = -1;
+        for(int probes = 0; probes < capacity; probes++) {
+            int base = slot * SLOT;
+            byte state = table.get(base + OFF_STATE);
+            if(state == EMPTY)
+                return -(tombstone >= 0 ? tombstone : slot) - 1;
+            if(state == DELETED) {
+                if(tombstone < 0) tombstone = slot;
+            } else if(table.getLong(base + OFF_APP_HASH) == appHash &&
+                    table.getShort(base + OFF_APP_LEN) == app.length &&
+                    matches(table, base, address) &&
+                    matches(arena, table.getInt(base + OFF_ARENA), app)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -tombstone - 1;
+    }
+
+    private void write(int slot, byte[] address, long appHash, int arenaOffset, int appLength, int idLength) {
+        int base = slot * SLOT;
+        table.put(base, address);
+        table.putLong(base + OFF_APP_HASH, appHash);
+        table.putInt(base + OFF_ARENA, arenaOffset);
+        table.putShort(base + OFF_APP_LEN, (short) appLength);
+        table.putShort(base + OFF_ID_LEN, (short) idLength);
+        table.put(base + OFF_STATE, FULL);
+    }
+
+    private int append(byte[] app, byte[] id) {
+        int needed = app.length + id.length;
+        if(arenaUsed + needed > arena.capacity()) {
+            ByteBuffer grown = ByteBuffer.allocateDirect(Math.max(arena.capacity() * 2, arenaUsed + needed));
+            grown.put(arena.duplicate().clear().limit(arenaUsed)).clear();
+            arena = grown;
+        }
+        int offset = arenaUsed;
+        arena.put(offset, app).put(offset + app.length, id);
+        arenaUsed += needed;
+        return offset;
+    }
+
+    private void rehash(int newCapacity) {
+        ByteBuffer oldTable = table;
+        ByteBuffer oldArena = arena;
+        int oldCapacity = capacity;
+        table = ByteBuffer.allocateDirect(newCapacity * SLOT);
+        arena = ByteBuffer.allocateDirect(Math.max(arenaUsed, newCapacity * 16));
+        capacity = newCapacity;
+        arenaUsed = 0;
+        deleted = 0;
+        byte[] address = new byte[ADDRESS_LENGTH];
+        for(int i = 0; i < oldCapacity; i++) {
+            int base = i * SLOT;
+            if(oldTable.get(base + OFF_STATE) != FULL) continue;
+            oldTable.get(base, address);
+            byte[] app = new byte[oldTable.getShort(base + OFF_APP_LEN)];
+            byte[] id = new byte[oldTable.getShort(base + OFF_ID_LEN)];
+            int offset = oldTable.getInt(base + OFF_ARENA);
+            oldArena.get(offset, app).get(offset + app.length, id);
+            long appHash = oldTable.getLong(base + OFF_APP_HASH);
+            int slot = -locate(address, app, appHash) - 1;
+            write(slot, address, appHash, append(app, id), app.length, id.length);
+        }
+    }
+
+    private static boolean matches(ByteBuffer buffer, int offset, byte[] bytes) {
+        for(int i = 0; i < bytes.length; i++)
+            if(buffer.get(offset + i) != bytes[i]) return false;
+        return true;
+    }
+
+    private static long hash(byte[] bytes) {
+        long hash = 0xcbf29ce484222325L;
+        for(byte b : bytes) {
+            hash ^= b;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long mix(byte[] address, long appHash) {
+        long h = appHash;
+        for(int i = 0; i < 8; i++) h = (h << 8 | h >>> 56) ^ address[i];
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.address;
+
+import com.mytiki.l0_registry.utilities.AppBloom;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class AddressIndexRepository {
+    private static final String SELECT_AFTER =
+            "SELECT a.address_id, a.address, g.app_id, c.customer_id FROM address a " +
+            "JOIN cid c ON c.cid_id = a.cid_id " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "WHERE a.address_id > ? ORDER BY a.address_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+
+    public AddressIndexRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    public long load(AddressIndex index, long after) {
+        long highWater = stream(after, rs -> index.put(rs.getString(3), rs.getBytes(2), rs.getString(4)));
+        index.setHighWater(highWater);
+        return highWater;
+    }
+
+    public long load(AppBloom bloom, long after) {
+        return stream(after, rs -> bloom.put(rs.getString(3), rs.getBytes(2)));
+    }
+
+    private long stream(long after, RowCallbackHandler handler) {
+        AtomicLong highWater = new AtomicLong(after);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_AFTER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, after);
+            return ps;
+        }, rs -> {
+            handler.processRow(rs);
+            highWater.set(rs.getLong(1));
+        }));
+        return highWater.get();
+    }
+}
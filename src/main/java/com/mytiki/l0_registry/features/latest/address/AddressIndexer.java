@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.address;
+
+import com.mytiki.l0_registry.features.latest.change.ChangeAORsp;
+import com.mytiki.l0_registry.features.latest.change.ChangeService;
+import com.mytiki.l0_registry.utilities.B64Url;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class AddressIndexer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final AddressIndex index;
+    private final AddressIndexRepository repository;
+    private final ChangeService changeService;
+    private final Path snapshot;
+    private final Duration interval;
+    private final ScheduledExecutorService scheduler;
+    private final Counter hit;
+    private final Counter miss;
+    private volatile boolean restored = false;
+    private volatile boolean ready = false;
+    private volatile boolean dirty = false;
+
+    public AddressIndexer(
+            AddressIndex index,
+            AddressIndexRepository repository,
+            ChangeService changeService,
+            Path snapshot,
+            Duration interval,
+            Duration maxAge,
+            MeterRegistry meterRegistry) {
+        this.index = index;
+        this.repository = repository;
+        this.changeService = changeService;
+        this.snapshot = snapshot;
+        this.interval = interval;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("address-index-"));
+        Gauge.builder("l0_registry.address.index.size", index, AddressIndex::size)
+                .description("Addresses held in the reverse index")
+                .register(meterRegistry);
+        Gauge.builder("l0_registry.address.index.bytes", index, AddressIndex::bytes)
+                .description("Off-heap bytes allocated by the reverse index")
+                .register(meterRegistry);
+        this.hit = Counter.builder("l0_registry.address.index.hit").register(meterRegistry);
+        this.miss = Counter.builder("l0_registry.address.index.miss").register(meterRegistry);
+        restore(maxAge);
+        scheduler.execute(this::start);
+        scheduler.scheduleWithFixedDelay(this::checkpoint, interval.toSeconds(), interval.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    public String get(String appId, byte[] address) {
+        String found = ready ? index.get(appId, address) : null;
+        if(found != null) hit.increment();
+        else miss.increment();
+        return found;
+    }
+
+    public void remove(String appId, byte[] address) {
+        index.remove(appId, address);
+        dirty = true;
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    index.remove(appId, address);
+                }
+            });
+        }
+    }
+
+    public void apply(List<ChangeAORsp> changes) {
+        if(changes.isEmpty()) return;
+        for(ChangeAORsp change : changes) {
+            if(change.getAddress() == null) continue;
+            byte[] address = B64Url.decode(change.getAddress());
+            if(ChangeService.OPERATION_ADD.equals(change.getOperation()))
+                index.put(change.getAppId(), address, change.getId());
+            else if(ChangeService.OPERATION_DELETE.equals(change.getOperation()))
+                index.remove(change.getAppId(), address);
+        }
+        index.setSeq(changes.get(changes.size() - 1).getSeq());
+        dirty = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        if(ready) save();
+    }
+
+    private void restore(Duration maxAge) {
+        try {
+            if(!Files.exists(snapshot)) return;
+            Instant modified = Files.getLastModifiedTime(snapshot).toInstant();
+            if(modified.plus(maxAge).isBefore(Instant.now())) {
+                logger.info("Address index snapshot is stale, rebuilding");
+                return;
+            }
+            index.read(snapshot);
+            restored = true;
+            logger.info("Restored {} addresses from index snapshot at change {}", index.size(), index.getSeq());
+        } catch (IOException e) {
+            logger.warn("Failed to restore address index snapshot", e);
+        }
+    }
+
+    private void start() {
+        try {
+            if(restored && index.getSeq() < changeService.pruned()) {
+                logger.info("Address index snapshot is behind the retained change log, rebuilding");
+                restored = false;
+            }
+            if(!restored) {
+                index.clear();
+                long seq = changeService.position();
+                repository.load(index, 0);
+                index.setSeq(seq);
+                restored = true;
+            }
+            changeService.listen(this::apply, index.getSeq());
+            ready = true;
+            logger.info("Address index ready with {} addresses", index.size());
+            save();
+        } catch (RuntimeException e) {
+            logger.error("Failed to start address index, retrying", e);
+            scheduler.schedule(this::start, interval.toSeconds(), TimeUnit.SECONDS);
+        }
+    }
+
+    private void checkpoint() {
+        if(ready && dirty) save();
+    }
+
+    private void save() {
+        dirty = false;
+        try {
+            Files.createDirectories(snapshot.toAbsolutePath().getParent());
+            index.write(snapshot);
+        } catch (IOException e) {
+            logger.warn("Failed to write address index snapshot", e);
+        }
+    }
+}
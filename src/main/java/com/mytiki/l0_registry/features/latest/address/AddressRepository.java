@@ -12,6 +12,8 @@ import java.util.Optional;
 
 public interface AddressRepository extends JpaRepository<AddressDO, Long> {
     Optional<AddressDO> findByIdAndAddress(IdDO id, byte[] address);
+    boolean existsByIdAndAddress(IdDO id, byte[] address);
     void deleteAllById(IdDO id);
     Optional<AddressDO> findByAddressAndIdConfigAppId(byte[] address, String appId);
+    boolean existsByAddressAndIdConfigAppId(byte[] address, String appId);
 }
@@ -5,33 +5,85 @@
 
 package com.mytiki.l0_registry.features.latest.address;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mytiki.l0_registry.features.latest.id.IdDO;
+import com.mytiki.l0_registry.utilities.AppBloom;
 import com.mytiki.l0_registry.utilities.B64Url;
+import com.mytiki.spring_rest_api.ApiExceptionBuilder;
+import org.springframework.http.HttpStatus;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.time.ZonedDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BooleanSupplier;
 
 public class AddressService {
     private final AddressRepository repository;
+    private final AddressBatchRepository batchRepository;
+    private final AddressExportRepository exportRepository;
+    private final ObjectMapper objectMapper;
+    private final AddressIndexer indexer;
+    private final AppBloom bloom;
+    private final int batchMax;
 
-    public AddressService(AddressRepository repository) {
+    public AddressService(
+            AddressRepository repository,
+            AddressBatchRepository batchRepository,
+            AddressExportRepository exportRepository,
+            ObjectMapper objectMapper,
+            AddressIndexer indexer,
+            AppBloom bloom,
+            int batchMax) {
         this.repository = repository;
+        this.batchRepository = batchRepository;
+        this.exportRepository = exportRepository;
+        this.objectMapper = objectMapper;
+        this.indexer = indexer;
+        this.bloom = bloom;
+        this.batchMax = batchMax;
     }
 
-    public void save(IdDO id, String address){
+    public boolean save(IdDO id, String address){
         byte[] addressBytes = B64Url.decode(address);
-        Optional<AddressDO> found = repository.findByIdAndAddress(id, addressBytes);
-        if(found.isPresent()) return;
+        if(repository.existsByIdAndAddress(id, addressBytes)) return false;
 
         AddressDO save = new AddressDO();
         save.setId(id);
         save.setAddress(addressBytes);
         save.setCreated(ZonedDateTime.now());
         repository.save(save);
+        bloom.put(id.getConfig().getAppId(), addressBytes);
+        return true;
+    }
+
+    public void index(String appId, List<byte[]> addresses){
+        addresses.forEach(address -> bloom.put(appId, address));
+    }
+
+    public boolean exists(String address, String appId){
+        byte[] addressBytes = B64Url.decode(address);
+        if(!bloom.mightContain(appId, addressBytes)) return false;
+        if(indexer.get(appId, addressBytes) != null) return true;
+        return repository.existsByAddressAndIdConfigAppId(addressBytes, appId);
     }
 
     public AddressRsp getId(String address, String appId){
         byte[] addressBytes = B64Url.decode(address);
+        if(!bloom.mightContain(appId, addressBytes)) return null;
+        String indexed = indexer.get(appId, addressBytes);
+        if(indexed != null){
+            AddressRsp rsp = new AddressRsp();
+            rsp.setId(indexed);
+            return rsp;
+        }
         Optional<AddressDO> found = repository.findByAddressAndIdConfigAppId(addressBytes, appId);
         if(found.isPresent()){
             AddressRsp rsp = new AddressRsp();
@@ -41,7 +93,67 @@ public class AddressService {
             return null;
     }
 
+    public Map<String, String> getIds(List<String> addresses, String appId){
+        if(addresses.size() > batchMax)
+            throw new ApiExceptionBuilder(HttpStatus.BAD_REQUEST)
+                    .message("Batch too large")
+                    .detail("Batch exceeds the maximum number of addresses")
+                    .properties("max", String.valueOf(batchMax))
+                    .build();
+        Map<String, String> rsp = new HashMap<>(addresses.size());
+        Map<ByteBuffer, String> unresolved = new HashMap<>();
+        BooleanSupplier current = bloom.current();
+        for(String address : addresses){
+            byte[] addressBytes = B64Url.decode(address);
+            if(!bloom.mightContain(appId, addressBytes, current)) continue;
+            String indexed = indexer.get(appId, addressBytes);
+            if(indexed != null) rsp.put(address, indexed);
+            else unresolved.put(ByteBuffer.wrap(addressBytes), address);
+        }
+        if(!unresolved.isEmpty()) {
+            Map<ByteBuffer, String> found = batchRepository.findIds(appId,
+                    unresolved.keySet().stream().map(ByteBuffer::array).toList());
+            found.forEach((address, id) -> rsp.put(unresolved.get(address), id));
+        }
+        return rsp;
+    }
+
+    public long decodeCursor(String cursor){
+        if(cursor == null || cursor.isEmpty()) return 0;
+        try {
+            byte[] bytes = B64Url.decode(cursor);
+            if(bytes.length == Long.BYTES) return ByteBuffer.wrap(bytes).getLong();
+        } catch (IllegalArgumentException ignored) {}
+        throw new ApiExceptionBuilder(HttpStatus.BAD_REQUEST)
+                .message("Invalid cursor")
+                .detail("Cursor must be a value returned by a previous export")
+                .build();
+    }
+
+    public void export(String appId, long after, OutputStream out) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+            generator.setRootValueSeparator(null);
+            exportRepository.export(appId, after, rs -> {
+                try {
+                    generator.writeStartObject();
+                    generator.writeStringField("address", B64Url.encode(rs.getBytes(2)));
+                    generator.writeStringField("id", rs.getString(3));
+                    generator.writeStringField("cursor",
+                            B64Url.encode(ByteBuffer.allocate(Long.BYTES).putLong(rs.getLong(1)).array()));
+                    generator.writeEndObject();
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
     public void deleteById(IdDO id){
+        id.getAddresses().forEach(address -> indexer.remove(id.getConfig().getAppId(), address.getAddress()));
         repository.deleteAllById(id);
     }
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.change;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+
+public class ChangeConfig {
+
+    @Bean
+    public ChangeRepository changeRepository(
+            @Autowired JdbcTemplate jdbcTemplate,
+            @Autowired TransactionTemplate transactionTemplate){
+        return new ChangeRepository(jdbcTemplate, transactionTemplate);
+    }
+
+    @Bean
+    public ChangeService changeService(
+            @Autowired ChangeRepository repository,
+            @Value("${com.mytiki.l0_registry.change.batch_size}") int batchSize,
+            @Value("${com.mytiki.l0_registry.change.poll.timeout_seconds}") long timeoutSeconds,
+            @Value("${com.mytiki.l0_registry.change.poll.interval_ms}") long intervalMs,
+            @Value("${com.mytiki.l0_registry.change.cursor.checkpoint_seconds}") long checkpointSeconds,
+            @Value("${com.mytiki.l0_registry.change.cursor.ttl_seconds}") long cursorTtlSeconds,
+            @Value("${com.mytiki.l0_registry.change.retention.interval_seconds}") long retentionIntervalSeconds,
+            @Value("${com.mytiki.l0_registry.change.retention.min_age_hours}") long retentionHours,
+            @Value("${com.mytiki.l0_registry.change.deliver.threads}") int deliverThreads,
+            @Value("${com.mytiki.l0_registry.change.deliver.max_pending}") int maxPending,
+            @Autowired MeterRegistry meterRegistry){
+        return new ChangeService(repository, batchSize, Duration.ofSeconds(timeoutSeconds), Duration.ofMillis(intervalMs),
+                Duration.ofSeconds(checkpointSeconds), Duration.ofSeconds(cursorTtlSeconds),
+                Duration.ofSeconds(retentionIntervalSeconds), Duration.ofHours(retentionHours), deliverThreads, maxPending, meterRegistry);
+    }
+
+    @Bean
+    public ChangeController changeController(@Autowired ChangeService service){
+        return new ChangeController(service);
+    }
+}
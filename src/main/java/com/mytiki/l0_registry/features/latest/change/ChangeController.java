@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.change;
+
+import com.mytiki.spring_rest_api.ApiConstants;
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.annotation.Secured;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+
+@RestController
+@RequestMapping(value = ChangeController.PATH_CONTROLLER)
+public class ChangeController {
+
+    public static final String PATH_CONTROLLER = ApiConstants.API_LATEST_ROUTE + "change";
+    public static final String PATH_STREAM = "/stream";
+
+    private final ChangeService service;
+
+    public ChangeController(ChangeService service) {
+        this.service = service;
+    }
+
+    @Secured({"ROLE_L0_INDEX", "SCOPE_internal:read"})
+    @Operation(hidden = true)
+    @RequestMapping(method = RequestMethod.GET)
+    public DeferredResult<List<ChangeAORsp>> get(
+            @RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "app-id", required = false) String appId,
+            @RequestParam(name = "limit", defaultValue = "1000") int limit) {
+        return service.poll(appId, after, limit);
+    }
+
+    @Secured({"ROLE_L0_INDEX", "SCOPE_internal:read"})
+    @Operation(hidden = true)
+    @RequestMapping(method = RequestMethod.GET, path = PATH_STREAM, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getStream(
+            @RequestParam(name = "after", defaultValue = "0") long after,
+            @RequestParam(name = "app-id", required = false) String appId,
+            @RequestHeader(name = "Last-Event-ID", required = false) Long lastEventId) {
+        return service.stream(appId, lastEventId != null ? lastEventId : after);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.change;
+
+import com.mytiki.l0_registry.utilities.B64Url;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+public class ChangeRepository {
+    private static final long LOCK_KEY = 0x4C30524547434C47L;
+    private static final String LOCK =
+            "SELECT pg_advisory_xact_lock(?)";
+    private static final String INSERT =
+            "INSERT INTO change_log(operation, app_id, customer_id, address, created_utc) VALUES (?, ?, ?, ?, ?)";
+    private static final String SELECT_AFTER =
+            "SELECT seq, operation, app_id, customer_id, address, created_utc FROM change_log " +
+            "WHERE seq > ? ORDER BY seq LIMIT ?";
+    private static final String SELECT_APP_AFTER =
+            "SELECT seq, operation, app_id, customer_id, address, created_utc FROM change_log " +
+            "WHERE app_id = ? AND seq > ? ORDER BY seq LIMIT ?";
+    private static final String SELECT_HEAD =
+            "SELECT COALESCE(MAX(seq), 0) FROM change_log";
+    private static final String SELECT_PRUNED =
+            "SELECT COALESCE(MAX(pruned_seq), 0) FROM change_retention";
+    private static final String UPSERT_CURSOR =
+            "INSERT INTO change_cursor(consumer, seq, modified_utc) VALUES (?, ?, ?) " +
+            "ON CONFLICT (consumer) DO UPDATE SET seq = EXCLUDED.seq, modified_utc = EXCLUDED.modified_utc";
+    private static final String DELETE_CURSOR =
+            "DELETE FROM change_cursor WHERE consumer = ?";
+    private static final String DELETE_STALE_CURSORS =
+            "DELETE FROM change_cursor WHERE modified_utc < ?";
+    private static final String PRUNE =
+            "WITH pruned AS (" +
+            "DELETE FROM change_log WHERE created_utc < ? " +
+            "AND seq <= (SELECT MIN(seq) FROM change_cursor WHERE modified_utc >= ?) RETURNING seq), " +
+            "saved AS (" +
+            "INSERT INTO change_retention(retention_id, pruned_seq) " +
+            "SELECT 1, MAX(seq) FROM pruned HAVING COUNT(*) > 0 " +
+            "ON CONFLICT (retention_id) DO UPDATE " +
+            "SET pruned_seq = GREATEST(change_retention.pruned_seq, EXCLUDED.pruned_seq)) " +
+            "SELECT COUNT(*) FROM pruned";
+
+    private static final RowMapper<ChangeAORsp> MAPPER = (rs, i) -> {
+        ChangeAORsp rsp = new ChangeAORsp();
+        rsp.setSeq(rs.getLong(1));
+        rsp.setOperation(rs.getString(2));
+        rsp.setAppId(rs.getString(3));
+        rsp.setId(rs.getString(4));
+        byte[] address = rs.getBytes(5);
+        rsp.setAddress(address == null ? null : B64Url.encode(address));
+        rsp.setCreated(rs.getObject(6, OffsetDateTime.class).atZoneSameInstant(ZoneOffset.UTC));
+        return rsp;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChangeRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void append(List<Object[]> rows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.query(LOCK, rs -> {}, LOCK_KEY);
+            jdbcTemplate.batchUpdate(INSERT, rows);
+        });
+    }
+
+    public List<ChangeAORsp> after(long seq, String appId, int limit) {
+        if(appId == null) return jdbcTemplate.query(SELECT_AFTER, MAPPER, seq, limit);
+        else return jdbcTemplate.query(SELECT_APP_AFTER, MAPPER, appId, seq, limit);
+    }
+
+    public long head() {
+        Long head = jdbcTemplate.queryForObject(SELECT_HEAD, Long.class);
+        return head == null ? 0 : head;
+    }
+
+    public long pruned() {
+        Long pruned = jdbcTemplate.queryForObject(SELECT_PRUNED, Long.class);
+        return pruned == null ? 0 : pruned;
+    }
+
+    public void checkpoint(String consumer, long seq, OffsetDateTime now) {
+        jdbcTemplate.update(UPSERT_CURSOR, consumer, seq, now);
+    }
+
+    public void release(String consumer) {
+        jdbcTemplate.update(DELETE_CURSOR, consumer);
+    }
+
+    public long prune(OffsetDateTime createdBefore, OffsetDateTime liveSince) {
+        jdbcTemplate.update(DELETE_STALE_CURSORS, liveSince);
+        Long pruned = jdbcTemplate.queryForObject(PRUNE, Long.class, createdBefore, liveSince);
+        return pruned == null ? 0 : pruned;
+    }
+}
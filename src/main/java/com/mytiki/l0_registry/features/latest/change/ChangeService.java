@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.change;
+
+import com.mytiki.spring_rest_api.ApiExceptionBuilder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class ChangeService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    public static final String OPERATION_ADD = "add";
+    public static final String OPERATION_DELETE = "delete";
+
+    private final ChangeRepository repository;
+    private final int batchSize;
+    private final Duration pollTimeout;
+    private final Duration cursorTtl;
+    private final Duration retention;
+    private final int maxPending;
+    private final String consumer = UUID.randomUUID().toString();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService deliveries;
+    private final Counter pruned;
+    private final Counter dropped;
+    private final List<Consumer<List<ChangeAORsp>>> listeners = new CopyOnWriteArrayList<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private long cursor = -1;
+    private volatile long head = -1;
+    private volatile Instant polled = Instant.EPOCH;
+
+    public ChangeService(
+            ChangeRepository repository,
+            int batchSize,
+            Duration pollTimeout,
+            Duration pollInterval,
+            Duration checkpointInterval,
+            Duration cursorTtl,
+            Duration retentionInterval,
+            Duration retention,
+            int deliverThreads,
+            int maxPending,
+            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.batchSize = batchSize;
+        this.pollTimeout = pollTimeout;
+        this.cursorTtl = cursorTtl;
+        this.retention = retention;
+        this.maxPending = maxPending;
+        this.pruned = Counter.builder("l0_registry.change.retention.pruned")
+                .description("Change log rows removed by the retention job")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("l0_registry.change.subscriber.dropped")
+                .description("Change subscribers closed for falling behind the feed")
+                .register(meterRegistry);
+        this.deliveries = new ThreadPoolExecutor(deliverThreads, deliverThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(deliverThreads * 16), new CustomizableThreadFactory("change-deliver-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("change-feed-"));
+        scheduler.scheduleWithFixedDelay(this::pump, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::checkpoint,
+                checkpointInterval.toMillis(), checkpointInterval.toMillis(), TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::prune,
+                retentionInterval.toMillis(), retentionInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @SuppressWarnings("unchecked")
+    public void append(String operation, String appId, String customerId, List<byte[]> addresses) {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<Object[]> rows = new ArrayList<>(Math.max(1, addresses.size()));
+        if(addresses.isEmpty()) rows.add(new Object[]{operation, appId, customerId, null, now});
+        else addresses.forEach(address -> rows.add(new Object[]{operation, appId, customerId, address, now}));
+        if(!TransactionSynchronizationManager.isSynchronizationActive()) {
+            repository.append(rows);
+            scheduler.execute(this::pump);
+            return;
+        }
+        List<Object[]> pending = (List<Object[]>) TransactionSynchronizationManager.getResource(this);
+        if(pending != null) {
+            pending.addAll(rows);
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(this, rows);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                repository.append(rows);
+            }
+
+            @Override
+            public void afterCommit() {
+                scheduler.execute(ChangeService.this::pump);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(ChangeService.this);
+            }
+        });
+    }
+
+    public void listen(Consumer<List<ChangeAORsp>> listener) {
+        listeners.add(listener);
+    }
+
+    public synchronized void listen(Consumer<List<ChangeAORsp>> listener, long after) {
+        long head = position();
+        while(after < head) {
+            List<ChangeAORsp> events = repository.after(after, null, batchSize).stream()
+                    .filter(event -> event.getSeq() <= head)
+                    .toList();
+            if(events.isEmpty()) break;
+            listener.accept(events);
+            after = events.get(events.size() - 1).getSeq();
+        }
+        listeners.add(listener);
+    }
+
+    public synchronized long position() {
+        if(cursor < 0) cursor = repository.head();
+        return cursor;
+    }
+
+    public long head(Duration maxLag) {
+        return polled.plus(maxLag).isBefore(Instant.now()) ? Long.MAX_VALUE : head;
+    }
+
+    public long pruned() {
+        return repository.pruned();
+    }
+
+    public DeferredResult<List<ChangeAORsp>> poll(String appId, long after, int limit) {
+        if(limit < 1)
+            throw new ApiExceptionBuilder(HttpStatus.BAD_REQUEST)
+                    .message("Invalid limit")
+                    .detail("Limit must be at least 1")
+                    .properties("max", String.valueOf(batchSize))
+                    .build();
+        guardPruned(after);
+        int capped = Math.min(limit, batchSize);
+        DeferredResult<List<ChangeAORsp>> result = new DeferredResult<>(pollTimeout.toMillis(), List.of());
+        List<ChangeAORsp> ready = repository.after(after, appId, capped);
+        if(!ready.isEmpty()) {
+            result.setResult(ready);
+            return result;
+        }
+        Subscriber subscriber = new Subscriber(appId, after, capped, false) {
+            @Override
+            void send(List<ChangeAORsp> events) {
+                result.setResult(events);
+            }
+        };
+        result.onCompletion(() -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        subscriber.deliver(repository.after(after, appId, capped));
+        return result;
+    }
+
+    public SseEmitter stream(String appId, long after) {
+        guardPruned(after);
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscriber subscriber = new Subscriber(appId, after, batchSize, true) {
+            @Override
+            void send(List<ChangeAORsp> events) throws IOException {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(events.get(events.size() - 1).getSeq()))
+                        .name("change")
+                        .data(events));
+            }
+
+            @Override
+            boolean isStreaming() {
+                return true;
+            }
+
+            @Override
+            void close() {
+                emitter.complete();
+            }
+        };
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        try {
+            deliveries.execute(() -> {
+                try {
+                    List<ChangeAORsp> backlog;
+                    do {
+                        backlog = repository.after(subscriber.last(), appId, batchSize);
+                        if(!subscriber.deliver(backlog)) {
+                            emitter.complete();
+                            return;
+                        }
+                    } while(backlog.size() == batchSize);
+                    subscriber.drain();
+                } catch (RuntimeException e) {
+                    emitter.completeWithError(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            subscribers.remove(subscriber);
+            throw new ApiExceptionBuilder(HttpStatus.SERVICE_UNAVAILABLE)
+                    .message("Change stream unavailable")
+                    .detail("Too many change streams are starting, retry later")
+                    .build();
+        }
+        return emitter;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        deliveries.shutdownNow();
+        try {
+            repository.release(consumer);
+        } catch (RuntimeException e) {
+            logger.error("Failed to release change feed cursor", e);
+        }
+    }
+
+    private void guardPruned(long after) {
+        long pruned = repository.pruned();
+        if(after < pruned)
+            throw new ApiExceptionBuilder(HttpStatus.GONE)
+                    .message("Changes pruned")
+                    .detail("Changes after the requested seq are no longer retained, re-sync and resume from pruned")
+                    .properties("pruned", String.valueOf(pruned))
+                    .build();
+    }
+
+    private void checkpoint() {
+        try {
+            repository.checkpoint(consumer, position(), OffsetDateTime.now());
+        } catch (RuntimeException e) {
+            logger.error("Failed to checkpoint change feed cursor", e);
+        }
+    }
+
+    private void prune() {
+        checkpoint();
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            pruned.increment(repository.prune(now.minus(retention), now.minus(cursorTtl)));
+        } catch (RuntimeException e) {
+            logger.error("Failed to prune change log", e);
+        }
+    }
+
+    private synchronized void pump() {
+        try {
+            Instant started = Instant.now();
+            if(cursor < 0) {
+                head = position();
+                polled = started;
+                return;
+            }
+            List<ChangeAORsp> events;
+            do {
+                events = repository.after(cursor, null, batchSize);
+                if(events.isEmpty()) break;
+                cursor = events.get(events.size() - 1).getSeq();
+                for(Consumer<List<ChangeAORsp>> listener : listeners) {
+                    try {
+                        listener.accept(events);
+                    } catch (RuntimeException e) {
+                        logger.error("Change listener failed", e);
+                    }
+                }
+                for(Subscriber subscriber : subscribers)
+                    if(!subscriber.offer(events)) subscribers.remove(subscriber);
+                head = cursor;
+            } while(events.size() == batchSize);
+            polled = started;
+        } catch (RuntimeException e) {
+            logger.error("Failed to read change feed", e);
+        }
+    }
+
+    private abstract class Subscriber {
+        private final String appId;
+        private final int limit;
+        private final Deque<List<ChangeAORsp>> pending = new ArrayDeque<>();
+        private volatile long last;
+        private volatile boolean done = false;
+        private boolean scheduled;
+
+        Subscriber(String appId, long after, int limit, boolean replaying) {
+            this.appId = appId;
+            this.last = after;
+            this.limit = limit;
+            this.scheduled = replaying;
+        }
+
+        abstract void send(List<ChangeAORsp> events) throws IOException;
+
+        boolean isStreaming() {
+            return false;
+        }
+
+        void close() {}
+
+        long last() {
+            return last;
+        }
+
+        boolean offer(List<ChangeAORsp> events) {
+            synchronized (pending) {
+                if(done) return false;
+                if(pending.size() < maxPending) {
+                    pending.add(events);
+                    if(scheduled) return true;
+                    try {
+                        deliveries.execute(this::drain);
+                        scheduled = true;
+                        return true;
+                    } catch (RejectedExecutionException ignored) {}
+                }
+                done = true;
+                pending.clear();
+            }
+            dropped.increment();
+            try {
+                deliveries.execute(this::close);
+            } catch (RejectedExecutionException ignored) {}
+            return false;
+        }
+
+        void drain() {
+            while(true) {
+                List<ChangeAORsp> events;
+                synchronized (pending) {
+                    events = done ? null : pending.poll();
+                    if(events == null) {
+                        scheduled = false;
+                        return;
+                    }
+                }
+                deliver(events);
+            }
+        }
+
+        synchronized boolean deliver(List<ChangeAORsp> events) {
+            if(done) return false;
+            List<ChangeAORsp> matched = events.stream()
+                    .filter(event -> event.getSeq() > last)
+                    .filter(event -> appId == null || appId.equals(event.getAppId()))
+                    .limit(limit)
+                    .toList();
+            if(matched.isEmpty()) return true;
+            try {
+                send(matched);
+                last = matched.get(matched.size() - 1).getSeq();
+                done = !isStreaming();
+            } catch (IOException | IllegalStateException e) {
+                done = true;
+            }
+            return !done;
+        }
+    }
+}
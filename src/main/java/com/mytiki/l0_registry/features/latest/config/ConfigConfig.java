@@ -6,12 +6,18 @@
 package com.mytiki.l0_registry.features.latest.config;
 
 
-import com.mytiki.l0_registry.l0.auth.L0AuthService;
+import com.mytiki.l0_registry.l0.auth.L0AuthCache;
 import com.mytiki.l0_registry.utilities.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
 
 @EnableJpaRepositories(ConfigConfig.PACKAGE_PATH)
 @EntityScan(ConfigConfig.PACKAGE_PATH)
@@ -23,10 +29,26 @@ public class ConfigConfig {
         return new ConfigController(service);
     }
 
+    @Bean
+    public ConfigNotifier configNotifier(
+            @Autowired DataSource dataSource,
+            @Autowired JdbcTemplate jdbcTemplate,
+            @Value("${com.mytiki.l0_registry.config.listen.poll_ms}") long pollMs,
+            @Value("${com.mytiki.l0_registry.config.listen.retry_seconds}") long retrySeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new ConfigNotifier(dataSource, jdbcTemplate, Duration.ofMillis(pollMs),
+                Duration.ofSeconds(retrySeconds), meterRegistry);
+    }
+
     @Bean
     public ConfigService configService(
             @Autowired ConfigRepository repository,
-            @Autowired L0AuthService l0AuthService){
-        return new ConfigService(repository, l0AuthService);
+            @Autowired L0AuthCache l0AuthCache,
+            @Autowired ConfigNotifier notifier,
+            @Value("${com.mytiki.l0_registry.config.cache.size}") long cacheSize,
+            @Value("${com.mytiki.l0_registry.config.cache.staleness_seconds}") long stalenessSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new ConfigService(repository, l0AuthCache, notifier, cacheSize,
+                Duration.ofSeconds(stalenessSeconds), meterRegistry);
     }
 }
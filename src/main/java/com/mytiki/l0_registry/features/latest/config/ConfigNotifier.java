@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.invoke.MethodHandles;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+public class ConfigNotifier implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final String CHANNEL = "l0_registry_config";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration pollTimeout;
+    private final Duration retryDelay;
+    private final ExecutorService executor;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> resets = new CopyOnWriteArrayList<>();
+    private final Counter received;
+    private final Counter disconnected;
+    private volatile boolean closed = false;
+
+    public ConfigNotifier(
+            DataSource dataSource,
+            JdbcTemplate jdbcTemplate,
+            Duration pollTimeout,
+            Duration retryDelay,
+            MeterRegistry meterRegistry) {
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.pollTimeout = pollTimeout;
+        this.retryDelay = retryDelay;
+        this.received = Counter.builder("l0_registry.config.notify.received")
+                .description("Config change notifications received from Postgres")
+                .register(meterRegistry);
+        this.disconnected = Counter.builder("l0_registry.config.notify.disconnect")
+                .description("Times the config LISTEN connection was lost")
+                .register(meterRegistry);
+        this.executor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("config-listen-"));
+        executor.execute(this::run);
+    }
+
+    public void listen(Consumer<String> listener, Runnable reset) {
+        listeners.add(listener);
+        resets.add(reset);
+    }
+
+    public void publish(String appId) {
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    send(appId);
+                }
+            });
+        } else send(appId);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        executor.shutdownNow();
+    }
+
+    private void send(String appId) {
+        listeners.forEach(listener -> listener.accept(appId));
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> {}, CHANNEL, appId);
+        } catch (DataAccessException e) {
+            logger.error("Failed to notify config change for appId: " + appId, e);
+        }
+    }
+
+    private void run() {
+        while(!closed) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pg = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                resets.forEach(Runnable::run);
+                while(!closed) {
+                    PGNotification[] notifications = pg.getNotifications((int) pollTimeout.toMillis());
+                    if(notifications == null) continue;
+                    for(PGNotification notification : notifications) {
+                        received.increment();
+                        listeners.forEach(listener -> listener.accept(notification.getParameter()));
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if(closed) return;
+                disconnected.increment();
+                logger.error("Config LISTEN connection lost, retrying in " + retryDelay.toMillis() + "ms", e);
+                try {
+                    Thread.sleep(retryDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -6,9 +6,14 @@
 package com.mytiki.l0_registry.features.latest.config;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface ConfigRepository extends JpaRepository<ConfigDO, Long> {
     Optional<ConfigDO> getByAppId(String appId);
+
+    @Query("SELECT DISTINCT c.jwksEndpoint FROM ConfigDO c WHERE c.jwksEndpoint IS NOT NULL")
+    List<String> findJwksEndpoints();
 }
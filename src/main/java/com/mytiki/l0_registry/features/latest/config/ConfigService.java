@@ -5,47 +5,68 @@
 
 package com.mytiki.l0_registry.features.latest.config;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.mytiki.l0_registry.l0.auth.L0AuthAOApp;
 import com.mytiki.l0_registry.l0.auth.L0AuthAOOrg;
-import com.mytiki.l0_registry.l0.auth.L0AuthAOToken;
-import com.mytiki.l0_registry.l0.auth.L0AuthService;
+import com.mytiki.l0_registry.l0.auth.L0AuthCache;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.springframework.http.HttpStatus;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Optional;
 
 public class ConfigService {
     private final ConfigRepository repository;
-    private final L0AuthService l0AuthService;
+    private final L0AuthCache l0AuthCache;
+    private final ConfigNotifier notifier;
+    private final Cache<String, ConfigDO> cache;
 
-    public ConfigService(ConfigRepository repository, L0AuthService l0AuthService) {
+    public ConfigService(
+            ConfigRepository repository,
+            L0AuthCache l0AuthCache,
+            ConfigNotifier notifier,
+            long cacheSize,
+            Duration staleness,
+            MeterRegistry meterRegistry) {
         this.repository = repository;
-        this.l0AuthService = l0AuthService;
+        this.l0AuthCache = l0AuthCache;
+        this.notifier = notifier;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(staleness)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "l0_registry.config.cache");
+        notifier.listen(cache::invalidate, cache::invalidateAll);
     }
 
     public ConfigAORsp get(String appId){
-        Optional<ConfigDO> found = repository.getByAppId(appId);
+        Optional<ConfigDO> found = find(appId);
         return found.map(this::toRsp).orElse(null);
     }
 
     public ConfigDO getBilling(String appId){
-        Optional<ConfigDO> found = repository.getByAppId(appId);
+        Optional<ConfigDO> found = find(appId);
         if(found.isEmpty())
             throw new ApiExceptionBuilder(HttpStatus.BAD_REQUEST)
                     .detail("Invalid appId")
                     .properties("appId", appId)
                     .build();
         if(found.get().getBillingId() == null){
-            L0AuthAOToken token = l0AuthService.getToken(List.of("auth:internal:read"));
-            L0AuthAOApp app = l0AuthService.getApp(appId, token.getAccessToken());
-            L0AuthAOOrg org = l0AuthService.getOrg(app.getOrgId(), token.getAccessToken());
-            ConfigDO update = found.get();
+            L0AuthAOApp app = l0AuthCache.getApp(appId);
+            L0AuthAOOrg org = l0AuthCache.getOrg(app.getOrgId());
+            ConfigDO update = repository.getByAppId(appId).orElseThrow();
             update.setBillingId(org.getBillingId());
-            return repository.save(update);
+            ConfigDO saved = repository.save(update);
+            notifier.publish(appId);
+            return saved;
         }else return found.get();
     }
 
@@ -64,11 +85,17 @@ public class ConfigService {
         if(req.getVerifySubject() != null)
             save.setVerifySubject(req.getVerifySubject());
         save.setModified(now);
-        return toRsp(repository.save(save));
+        ConfigDO saved = repository.save(save);
+        notifier.publish(req.getAppId());
+        return toRsp(saved);
+    }
+
+    public List<String> getJwksEndpoints(){
+        return repository.findJwksEndpoints();
     }
 
     public ConfigDO getCreate(String appId){
-        Optional<ConfigDO> found = repository.getByAppId(appId);
+        Optional<ConfigDO> found = find(appId);
         if(found.isEmpty()){
             ConfigDO save = new ConfigDO();
             ZonedDateTime now = ZonedDateTime.now();
@@ -79,6 +106,10 @@ public class ConfigService {
         }else return found.get();
     }
 
+    private Optional<ConfigDO> find(String appId){
+        return Optional.ofNullable(cache.get(appId, key -> repository.getByAppId(key).orElse(null)));
+    }
+
     private ConfigAORsp toRsp(ConfigDO cfg) {
         ConfigAORsp rsp = new ConfigAORsp();
         rsp.setAppId(cfg.getAppId());
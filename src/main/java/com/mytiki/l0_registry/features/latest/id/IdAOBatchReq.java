@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class IdAOBatchReq {
+    private String id;
+    private String address;
+    private String signature;
+    private String customerToken;
+
+    @JsonCreator
+    public IdAOBatchReq(
+            @JsonProperty(required = true) String id,
+            @JsonProperty(required = true) String address,
+            @JsonProperty(required = true) String signature,
+            @JsonProperty String customerToken) {
+        this.id = id;
+        this.address = address;
+        this.signature = signature;
+        this.customerToken = customerToken;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setSignature(String signature) {
+        this.signature = signature;
+    }
+
+    public String getCustomerToken() {
+        return customerToken;
+    }
+
+    public void setCustomerToken(String customerToken) {
+        this.customerToken = customerToken;
+    }
+}
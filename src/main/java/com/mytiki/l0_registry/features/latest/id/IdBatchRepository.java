@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.mytiki.l0_registry.features.latest.config.ConfigDO;
+import com.mytiki.l0_registry.features.latest.sign.SignKey;
+import jakarta.transaction.Transactional;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+public class IdBatchRepository {
+    private static final String INSERT_CID =
+            "INSERT INTO cid(customer_id, config_id, created_utc) " +
+            "SELECT unnest(?::text[]), ?, ? " +
+            "ON CONFLICT (customer_id, config_id) DO NOTHING " +
+            "RETURNING cid_id, customer_id";
+    private static final String SELECT_CID =
+            "SELECT cid_id, customer_id FROM cid WHERE config_id = ? AND customer_id = ANY(?::text[])";
+    private static final String SELECT_SIGN_KEY =
+            "SELECT DISTINCT ON (cid_id) cid_id, private_key FROM sign_key " +
+            "WHERE cid_id = ANY(?::bigint[]) ORDER BY cid_id, created_utc DESC";
+    private static final String INSERT_SIGN_KEY =
+            "INSERT INTO sign_key(cid_id, private_key, public_key, key_thumbprint, created_utc) VALUES (?, ?, ?, ?, ?)";
+    private static final String INSERT_ADDRESS =
+            "INSERT INTO address(cid_id, address, created_utc) VALUES (?, ?, ?) " +
+            "ON CONFLICT (cid_id, address) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public IdBatchRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Transactional
+    public IdBatchResult save(
+            ConfigDO config,
+            Map<String, List<byte[]>> addresses,
+            Supplier<SignKey> keys,
+            Consumer<IdBatchResult> onSaved){
+        OffsetDateTime now = OffsetDateTime.now();
+        String[] customerIds = addresses.keySet().toArray(String[]::new);
+        Map<String, Long> cids = new HashMap<>();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_CID);
+            ps.setArray(1, con.createArrayOf("text", customerIds));
+            ps.setLong(2, config.getConfigId());
+            ps.setObject(3, now);
+            return ps;
+        }, rs -> { cids.put(rs.getString(2), rs.getLong(1)); });
+        Set<String> created = new HashSet<>(cids.keySet());
+
+        String[] existing = Arrays.stream(customerIds).filter(id -> !created.contains(id)).toArray(String[]::new);
+        if(existing.length > 0) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SELECT_CID);
+                ps.setLong(1, config.getConfigId());
+                ps.setArray(2, con.createArrayOf("text", existing));
+                return ps;
+            }, rs -> { cids.put(rs.getString(2), rs.getLong(1)); });
+        }
+
+        Map<Long, byte[]> signKeys = new HashMap<>();
+        Long[] existingCids = Arrays.stream(existing).map(cids::get).toArray(Long[]::new);
+        if(existingCids.length > 0) {
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SELECT_SIGN_KEY);
+                ps.setArray(1, con.createArrayOf("bigint", existingCids));
+                return ps;
+            }, rs -> { signKeys.put(rs.getLong(1), rs.getBytes(2)); });
+        }
+        List<Object[]> newKeys = new ArrayList<>();
+        for(Long cid : cids.values()) {
+            if(!signKeys.containsKey(cid)) {
+                SignKey key = keys.get();
+                signKeys.put(cid, key.getPrivateKey());
+                newKeys.add(new Object[]{cid, key.getPrivateKey(), key.getPublicKey(), key.getThumbprint(), now});
+            }
+        }
+        if(!newKeys.isEmpty()) jdbcTemplate.batchUpdate(INSERT_SIGN_KEY, newKeys);
+
+        List<Object[]> newAddresses = new ArrayList<>();
+        List<String> newAddressIds = new ArrayList<>();
+        addresses.forEach((id, list) -> list.forEach(address -> {
+            newAddresses.add(new Object[]{cids.get(id), address, now});
+            newAddressIds.add(id);
+        }));
+        int[] inserted = jdbcTemplate.batchUpdate(INSERT_ADDRESS, newAddresses);
+        Map<String, List<byte[]>> added = new HashMap<>();
+        for(int i = 0; i < inserted.length; i++) {
+            if(inserted[i] != 0)
+                added.computeIfAbsent(newAddressIds.get(i), k -> new ArrayList<>()).add((byte[]) newAddresses.get(i)[1]);
+        }
+
+        Map<String, byte[]> rsp = new HashMap<>(cids.size());
+        cids.forEach((id, cid) -> rsp.put(id, signKeys.get(cid)));
+        IdBatchResult result = new IdBatchResult(rsp, created, added);
+        onSaved.accept(result);
+        return result;
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class IdBatchResult {
+    private final Map<String, byte[]> signKeys;
+    private final Set<String> created;
+    private final Map<String, List<byte[]>> added;
+
+    public IdBatchResult(Map<String, byte[]> signKeys, Set<String> created, Map<String, List<byte[]>> added) {
+        this.signKeys = signKeys;
+        this.created = created;
+        this.added = added;
+    }
+
+    public Map<String, byte[]> getSignKeys() {
+        return signKeys;
+    }
+
+    public Set<String> getCreated() {
+        return created;
+    }
+
+    public Map<String, List<byte[]>> getAdded() {
+        return added;
+    }
+}
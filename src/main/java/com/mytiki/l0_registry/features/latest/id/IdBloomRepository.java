@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.mytiki.l0_registry.utilities.AppBloom;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class IdBloomRepository {
+    private static final String SELECT_AFTER =
+            "SELECT c.cid_id, g.app_id, c.customer_id FROM cid c " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "WHERE c.cid_id > ? ORDER BY c.cid_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int fetchSize;
+
+    public IdBloomRepository(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.fetchSize = fetchSize;
+    }
+
+    public long load(AppBloom bloom, long after) {
+        AtomicLong highWater = new AtomicLong(after);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SELECT_AFTER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, after);
+            return ps;
+        }, rs -> {
+            bloom.put(rs.getString(2), rs.getString(3).getBytes(StandardCharsets.UTF_8));
+            highWater.set(rs.getLong(1));
+        }));
+        return highWater.get();
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mytiki.l0_registry.features.latest.change.ChangeAORsp;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+public class IdCache {
+    private final Cache<Key, IdCacheEntry> cache;
+
+    public IdCache(long maxBytes, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, IdCacheEntry entry) -> key.weight() + entry.weight())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "l0_registry.id.lookup");
+    }
+
+    public IdCacheEntry get(String appId, String customerId, Supplier<IdCacheEntry> loader) {
+        return cache.get(new Key(appId, customerId), k -> loader.get());
+    }
+
+    public void invalidate(String appId, String customerId) {
+        Key key = new Key(appId, customerId);
+        cache.invalidate(key);
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    cache.invalidate(key);
+                }
+            });
+        }
+    }
+
+    public void apply(List<ChangeAORsp> changes) {
+        changes.forEach(change -> cache.invalidate(new Key(change.getAppId(), change.getId())));
+    }
+
+    private record Key(String appId, String customerId) {
+        int weight() {
+            return 48 + 2 * (appId.length() + customerId.length());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import java.util.Base64;
+import java.util.Set;
+import java.util.function.Function;
+
+public class IdCacheEntry {
+    private static final int OVERHEAD = 128;
+    private static final int ADDRESS_WEIGHT = 96;
+    private static final int PUB_KEY_WEIGHT = 400;
+
+    private final long cid;
+    private final Set<String> addresses;
+    private final byte[] signKey;
+    private volatile String pubKey;
+
+    public IdCacheEntry(long cid, Set<String> addresses, byte[] signKey, byte[] publicKey) {
+        this.cid = cid;
+        this.addresses = Set.copyOf(addresses);
+        this.signKey = signKey;
+        this.pubKey = publicKey == null ? null : Base64.getEncoder().encodeToString(publicKey);
+    }
+
+    public long getCid() {
+        return cid;
+    }
+
+    public Set<String> getAddresses() {
+        return addresses;
+    }
+
+    public byte[] getSignKey() {
+        return signKey;
+    }
+
+    public String getPubKey(Function<byte[], String> derive) {
+        if(pubKey == null && signKey != null) pubKey = derive.apply(signKey);
+        return pubKey;
+    }
+
+    public int weight() {
+        return OVERHEAD + PUB_KEY_WEIGHT + addresses.size() * ADDRESS_WEIGHT + (signKey == null ? 0 : signKey.length);
+    }
+}
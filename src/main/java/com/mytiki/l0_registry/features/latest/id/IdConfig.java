@@ -7,15 +7,25 @@ package com.mytiki.l0_registry.features.latest.id;
 
 
 import com.mytiki.l0_registry.features.latest.address.AddressService;
+import com.mytiki.l0_registry.features.latest.change.ChangeService;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.features.latest.jwks.JwksService;
 import com.mytiki.l0_registry.features.latest.sign.SignService;
 import com.mytiki.l0_registry.features.latest.usage.UsageService;
+import com.mytiki.l0_registry.utilities.AppBloom;
 import com.mytiki.l0_registry.utilities.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 
 @EnableJpaRepositories(IdConfig.PACKAGE_PATH)
 @EntityScan(IdConfig.PACKAGE_PATH)
@@ -23,18 +33,91 @@ public class IdConfig {
     public static final String PACKAGE_PATH = Constants.PACKAGE_FEATURES_LATEST_DOT_PATH + ".id";
 
     @Bean
-    public IdController idController(@Autowired IdService service){
-        return new IdController(service);
+    public IdController idController(
+            @Autowired IdService service,
+            @Value("${com.mytiki.l0_registry.id.jwks.max_age_seconds}") long jwksMaxAgeSeconds){
+        return new IdController(service, Duration.ofSeconds(jwksMaxAgeSeconds));
+    }
+
+    @Bean
+    public IdBatchRepository idBatchRepository(@Autowired JdbcTemplate jdbcTemplate){
+        return new IdBatchRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public IdPubKeyCache idPubKeyCache(
+            @Value("${com.mytiki.l0_registry.id.cache.pubkey.size}") long size,
+            @Autowired MeterRegistry meterRegistry){
+        return new IdPubKeyCache(size, meterRegistry);
+    }
+
+    @Bean
+    public IdSignatureCache idSignatureCache(
+            @Value("${com.mytiki.l0_registry.id.cache.signature.size}") long size,
+            @Value("${com.mytiki.l0_registry.id.cache.signature.ttl_seconds}") long ttlSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new IdSignatureCache(size, Duration.ofSeconds(ttlSeconds), meterRegistry);
+    }
+
+    @Bean
+    public IdCache idCache(
+            @Value("${com.mytiki.l0_registry.id.cache.lookup.max_bytes}") long maxBytes,
+            @Autowired MeterRegistry meterRegistry,
+            @Autowired ChangeService changeService){
+        IdCache cache = new IdCache(maxBytes, meterRegistry);
+        changeService.listen(cache::apply);
+        return cache;
+    }
+
+    @Bean
+    public IdBloomRepository idBloomRepository(
+            @Autowired JdbcTemplate jdbcTemplate,
+            @Autowired TransactionTemplate transactionTemplate,
+            @Value("${com.mytiki.l0_registry.id.bloom.fetch_size}") int fetchSize){
+        return new IdBloomRepository(jdbcTemplate, transactionTemplate, fetchSize);
+    }
+
+    @Bean
+    public AppBloom idBloom(
+            @Autowired IdBloomRepository repository,
+            @Value("${com.mytiki.l0_registry.id.bloom.expected}") long expected,
+            @Value("${com.mytiki.l0_registry.id.bloom.fpp}") double fpp,
+            @Value("${com.mytiki.l0_registry.id.bloom.max_bytes}") long maxBytes,
+            @Value("${com.mytiki.l0_registry.id.bloom.refresh_seconds}") long refreshSeconds,
+            @Value("${com.mytiki.l0_registry.id.bloom.max_lag_ms}") long maxLagMs,
+            @Autowired MeterRegistry meterRegistry,
+            @Autowired ChangeService changeService){
+        long position = changeService.position();
+        AppBloom idBloom = new AppBloom("id", expected, fpp, maxBytes, Duration.ofSeconds(refreshSeconds),
+                (bloom, after) -> repository.load(bloom, after), () -> changeService.head(Duration.ofMillis(maxLagMs)), meterRegistry);
+        idBloom.advance(position);
+        changeService.listen(changes -> {
+            changes.stream()
+                    .filter(change -> ChangeService.OPERATION_ADD.equals(change.getOperation()))
+                    .forEach(change -> idBloom.put(change.getAppId(), change.getId().getBytes(StandardCharsets.UTF_8)));
+            idBloom.advance(changes.get(changes.size() - 1).getSeq());
+        }, position);
+        return idBloom;
     }
 
     @Bean
     public IdService idService(
             @Autowired IdRepository repository,
+            @Autowired IdBatchRepository batchRepository,
+            @Autowired IdPubKeyCache pubKeyCache,
+            @Autowired IdSignatureCache signatureCache,
+            @Autowired IdCache cache,
+            @Autowired @Qualifier("idBloom") AppBloom bloom,
             @Autowired ConfigService configService,
             @Autowired SignService signService,
             @Autowired AddressService addressService,
             @Autowired JwksService jwksService,
-            @Autowired UsageService usageService){
-        return new IdService(repository, configService, signService, addressService, jwksService, usageService);
+            @Autowired UsageService usageService,
+            @Autowired ChangeService changeService,
+            @Value("${com.mytiki.l0_registry.id.batch.parallelism}") int batchParallelism,
+            @Value("${com.mytiki.l0_registry.id.batch.max}") int batchMax,
+            @Value("${com.mytiki.l0_registry.id.jwks.keys}") int jwksKeys){
+        return new IdService(repository, batchRepository, pubKeyCache, signatureCache, cache, bloom, configService, signService,
+                addressService, jwksService, usageService, changeService, batchParallelism, batchMax, jwksKeys);
     }
 }
@@ -6,15 +6,27 @@
 package com.mytiki.l0_registry.features.latest.id;
 
 import com.mytiki.l0_registry.utilities.AddressSignature;
+import com.mytiki.l0_registry.utilities.B64Url;
 import com.mytiki.l0_registry.utilities.Constants;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
 import com.mytiki.spring_rest_api.ApiConstants;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Tag(name = "")
 @RestController
@@ -22,11 +34,14 @@ import java.security.Principal;
 public class IdController {
 
     public static final String PATH_CONTROLLER = ApiConstants.API_LATEST_ROUTE + "id";
+    public static final String PATH_BATCH = "/batch";
 
     private final IdService service;
+    private final CacheControl jwksCacheControl;
 
-    public IdController(IdService service) {
+    public IdController(IdService service, Duration jwksMaxAge) {
         this.service = service;
+        this.jwksCacheControl = CacheControl.maxAge(jwksMaxAge).cachePrivate().mustRevalidate();
     }
 
     @Operation(operationId = Constants.PROJECT_DASH_PATH +  "-id-post",
@@ -45,6 +60,14 @@ public class IdController {
                 customerToken.replace("Bearer: ", ""));
     }
 
+    @Operation(operationId = Constants.PROJECT_DASH_PATH +  "-id-post-batch",
+            summary = "Register Addresses", description = "Register addresses for many custom IDs",
+            security = @SecurityRequirement(name = "oauth", scopes = "registry"))
+    @RequestMapping(method = RequestMethod.POST, path = PATH_BATCH)
+    public List<IdAOBatchRsp> postBatch(Principal principal, @RequestBody List<IdAOBatchReq> body) {
+        return service.registerBatch(principal.getName(), body);
+    }
+
     @Operation(operationId = Constants.PROJECT_DASH_PATH +  "-id-get",
             summary = "Get Addresses", description = "Get addresses registered for a custom ID",
             security = @SecurityRequirement(name = "oauth", scopes = "registry"))
@@ -75,4 +98,24 @@ public class IdController {
     public IdAORspKey getPubKey(Principal principal, @PathVariable("id") String id) {
         return service.pubKey(principal.getName(), id);
     }
+
+    @Operation(operationId = Constants.PROJECT_DASH_PATH +  "-id-get-jwks",
+            summary = "Get JWKS", description = "Returns the current and recent public keys for a custom ID as a JWK Set",
+            security = @SecurityRequirement(name = "oauth", scopes = "registry"))
+    @RequestMapping(method = RequestMethod.GET, path = "/{id}/jwks")
+    public ResponseEntity<Map<String, Object>> getJwks(
+            Principal principal,
+            @PathVariable("id") String id,
+            WebRequest request) {
+        JWKSet jwks = service.jwks(principal.getName(), id);
+        if(jwks == null) return ResponseEntity.notFound().build();
+        String etag = B64Url.encode(SHA3Facade.sha256(
+                jwks.getKeys().stream().map(JWK::getKeyID).collect(Collectors.joining(","))
+                        .getBytes(StandardCharsets.UTF_8)));
+        if(request.checkNotModified(etag)) return null;
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(jwksCacheControl)
+                .body(jwks.toJSONObject());
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.mytiki.l0_registry.utilities.RSAFacade;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+
+import java.io.IOException;
+
+public class IdPubKey {
+    private final RSAKeyParameters key;
+    private final byte[] address;
+
+    public IdPubKey(RSAKeyParameters key, byte[] address) {
+        this.key = key;
+        this.address = address;
+    }
+
+    public static IdPubKey decode(byte[] pubKey) throws IOException {
+        return new IdPubKey(
+                RSAFacade.toParameters(RSAFacade.decodePublicKey(pubKey)),
+                SHA3Facade.sha256(pubKey));
+    }
+
+    public RSAKeyParameters getKey() {
+        return key;
+    }
+
+    public byte[] getAddress() {
+        return address;
+    }
+}
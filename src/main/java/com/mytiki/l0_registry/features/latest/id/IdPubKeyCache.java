@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class IdPubKeyCache {
+    private final Cache<ByteBuffer, IdPubKey> cache;
+
+    public IdPubKeyCache(long maxSize, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "l0_registry.id.pubkey");
+    }
+
+    public IdPubKey get(byte[] pubKey) throws IOException {
+        ByteBuffer key = ByteBuffer.wrap(pubKey);
+        IdPubKey found = cache.getIfPresent(key);
+        if(found != null) return found;
+        IdPubKey decoded = IdPubKey.decode(pubKey);
+        cache.put(key, decoded);
+        return decoded;
+    }
+}
@@ -6,11 +6,40 @@
 package com.mytiki.l0_registry.features.latest.id;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface IdRepository extends JpaRepository<IdDO, Long> {
     Optional<IdDO> getByCustomerIdAndConfigAppId(String customerId, String appId);
     void deleteByCid(Long cid);
     long countByConfigAppId(String appId);
+
+    @Query(value = "SELECT c.cid_id AS \"cid\", s.private_key AS \"signKey\", s.public_key AS \"publicKey\", a.address AS \"address\" " +
+            "FROM cid c " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "LEFT JOIN LATERAL (SELECT private_key, public_key FROM sign_key WHERE cid_id = c.cid_id " +
+            "ORDER BY created_utc DESC LIMIT 1) s ON TRUE " +
+            "LEFT JOIN address a ON a.cid_id = c.cid_id " +
+            "WHERE g.app_id = :appId AND c.customer_id = :customerId",
+            nativeQuery = true)
+    List<IdView> getView(@Param("appId") String appId, @Param("customerId") String customerId);
+
+    @Query(value = "SELECT c.cid_id AS \"cid\", m.member AS \"member\", s.private_key AS \"signKey\", " +
+            "s.public_key AS \"publicKey\", a.address AS \"address\" " +
+            "FROM cid c " +
+            "JOIN config g ON g.config_id = c.config_id " +
+            "CROSS JOIN LATERAL (SELECT EXISTS (SELECT 1 FROM address " +
+            "WHERE cid_id = c.cid_id AND address = :address) AS member) m " +
+            "LEFT JOIN LATERAL (SELECT private_key, public_key FROM sign_key WHERE cid_id = c.cid_id " +
+            "ORDER BY created_utc DESC LIMIT 1) s ON m.member " +
+            "LEFT JOIN address a ON a.cid_id = c.cid_id AND m.member " +
+            "WHERE g.app_id = :appId AND c.customer_id = :customerId",
+            nativeQuery = true)
+    List<IdView> getMemberView(
+            @Param("appId") String appId,
+            @Param("customerId") String customerId,
+            @Param("address") byte[] address);
 }
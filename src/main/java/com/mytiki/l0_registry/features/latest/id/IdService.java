@@ -5,91 +5,119 @@
 
 package com.mytiki.l0_registry.features.latest.id;
 
+import com.mytiki.l0_registry.features.latest.address.AddressDO;
 import com.mytiki.l0_registry.features.latest.address.AddressService;
+import com.mytiki.l0_registry.features.latest.change.ChangeService;
 import com.mytiki.l0_registry.features.latest.config.ConfigDO;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.features.latest.jwks.JwksService;
 import com.mytiki.l0_registry.features.latest.sign.SignService;
 import com.mytiki.l0_registry.features.latest.usage.UsageService;
 import com.mytiki.l0_registry.utilities.AddressSignature;
+import com.mytiki.l0_registry.utilities.AppBloom;
 import com.mytiki.l0_registry.utilities.B64Url;
 import com.mytiki.l0_registry.utilities.RSAFacade;
-import com.mytiki.l0_registry.utilities.SHA3Facade;
+import com.mytiki.spring_rest_api.ApiException;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
+import com.nimbusds.jose.jwk.JWKSet;
 import jakarta.transaction.Transactional;
-import org.bouncycastle.asn1.pkcs.RSAPublicKey;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
-import java.security.NoSuchAlgorithmException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
-import java.util.Arrays;
-import java.util.Base64;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
-public class IdService {
+public class IdService implements AutoCloseable {
     private final IdRepository repository;
+    private final IdBatchRepository batchRepository;
+    private final IdPubKeyCache pubKeyCache;
+    private final IdSignatureCache signatureCache;
+    private final IdCache cache;
+    private final AppBloom bloom;
     private final ConfigService configService;
     private final SignService signService;
     private final AddressService addressService;
     private final JwksService jwksService;
     private final UsageService usageService;
+    private final ChangeService changeService;
+    private final ForkJoinPool batchPool;
+    private final int batchMax;
+    private final int jwksKeys;
 
     public IdService(
             IdRepository repository,
+            IdBatchRepository batchRepository,
+            IdPubKeyCache pubKeyCache,
+            IdSignatureCache signatureCache,
+            IdCache cache,
+            AppBloom bloom,
             ConfigService configService,
             SignService signService,
             AddressService addressService,
             JwksService jwksService,
-            UsageService usageService) {
+            UsageService usageService,
+            ChangeService changeService,
+            int batchParallelism,
+            int batchMax,
+            int jwksKeys) {
         this.repository = repository;
+        this.batchRepository = batchRepository;
+        this.pubKeyCache = pubKeyCache;
+        this.signatureCache = signatureCache;
+        this.cache = cache;
+        this.bloom = bloom;
         this.configService = configService;
         this.signService = signService;
         this.addressService = addressService;
         this.jwksService = jwksService;
         this.usageService = usageService;
+        this.changeService = changeService;
+        this.batchPool = new ForkJoinPool(batchParallelism);
+        this.batchMax = batchMax;
+        this.jwksKeys = jwksKeys;
     }
 
     @Transactional
     public IdAORsp get(String appId, String id, AddressSignature addressSignature){
-        try {
-            guardForSignature(addressSignature);
-            String address = B64Url.encode(SHA3Facade.sha256(
-                    Base64.getDecoder().decode(addressSignature.getPubKey())));
-            Optional<IdDO> found = repository.getByCustomerIdAndConfigAppId(id, appId);
-            if (found.isPresent()) {
-                Set<String> addressList = found.get()
-                        .getAddresses()
-                        .stream()
-                        .map(a -> B64Url.encode(a.getAddress()))
-                        .collect(Collectors.toSet());
-                if (!addressList.contains(address))
-                    throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
-                            .message("Address validation failed")
-                            .detail("Address is not a member")
-                            .help("Try adding the address to the id first")
-                            .build();
-                IdAORsp rsp = new IdAORsp();
-                rsp.setAddresses(addressList);
-                rsp.setSignKey(signService.get(found.get()));
-                return rsp;
-            }
-            return null;
-        }catch (NoSuchAlgorithmException e){
-            throw new ApiExceptionBuilder(HttpStatus.UNPROCESSABLE_ENTITY)
+        byte[] addressBytes = guardForSignature(addressSignature).getAddress();
+        String address = B64Url.encode(addressBytes);
+        if(!bloom.mightContain(appId, id.getBytes(StandardCharsets.UTF_8))) return null;
+        List<List<IdView>> loaded = new ArrayList<>(1);
+        IdCacheEntry entry = cache.get(appId, id, () -> {
+            List<IdView> view = repository.getMemberView(appId, id, addressBytes);
+            loaded.add(view);
+            return isMember(view) ? toEntry(view) : null;
+        });
+        if (entry == null) {
+            List<IdView> view = loaded.isEmpty() ? repository.getMemberView(appId, id, addressBytes) : loaded.get(0);
+            if (view.isEmpty()) return null;
+            if (isMember(view)) entry = toEntry(view);
+        }
+        if (entry == null || !entry.getAddresses().contains(address))
+            throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                     .message("Address validation failed")
-                    .detail(e.getMessage())
+                    .detail("Address is not a member")
+                    .help("Try adding the address to the id first")
                     .build();
-        }
+        IdAORsp rsp = new IdAORsp();
+        rsp.setAddresses(new HashSet<>(entry.getAddresses()));
+        if(entry.getSignKey() != null)
+            rsp.setSignKey(Base64.getEncoder().encodeToString(entry.getSignKey()));
+        else
+            rsp.setSignKey(repository.getByCustomerIdAndConfigAppId(id, appId).map(signService::get).orElse(null));
+        return rsp;
     }
 
     @Transactional
     public IdAORsp register(String appId, IdAOReq req, AddressSignature addressSignature, String customerToken){
         IdAORsp rsp = new IdAORsp();
-        guardForSignature(addressSignature);
-        guardForAddress(req.getAddress(), addressSignature.getPubKey());
+        IdPubKey pubKey = guardForSignature(addressSignature);
+        guardForAddress(req.getAddress(), pubKey);
+        cache.invalidate(appId, req.getId());
         Optional<IdDO> found = repository.getByCustomerIdAndConfigAppId(req.getId(), appId);
         if(found.isEmpty()){
             ConfigDO config = configService.getCreate(appId);
@@ -99,13 +127,17 @@ public class IdService {
             save.setCustomerId(req.getId());
             save.setCreated(ZonedDateTime.now());
             save = repository.save(save);
+            bloom.put(appId, req.getId().getBytes(StandardCharsets.UTF_8));
             usageService.increment(appId);
             rsp.setSignKey(signService.cycle(save));
             addressService.save(save, req.getAddress());
+            changeService.append(ChangeService.OPERATION_ADD, appId, req.getId(), List.of(B64Url.decode(req.getAddress())));
             rsp.setAddresses(Set.of(req.getAddress()));
         }else{
             jwksService.guard(req.getId(), customerToken, found.get().getConfig());
-            addressService.save(found.get(), req.getAddress());
+            if(addressService.save(found.get(), req.getAddress()))
+                changeService.append(ChangeService.OPERATION_ADD, appId, req.getId(),
+                        List.of(B64Url.decode(req.getAddress())));
             rsp.setSignKey(signService.get(found.get()));
             Set<String> addresses = found.get()
                     .getAddresses()
@@ -118,10 +150,61 @@ public class IdService {
         return rsp;
     }
 
+    public List<IdAOBatchRsp> registerBatch(String appId, List<IdAOBatchReq> req){
+        if(req.size() > batchMax)
+            throw new ApiExceptionBuilder(HttpStatus.BAD_REQUEST)
+                    .message("Batch too large")
+                    .detail("Batch exceeds the maximum number of entries")
+                    .properties("max", String.valueOf(batchMax))
+                    .build();
+        List<IdAOBatchRsp> rsp = batchPool.submit(() -> req.parallelStream()
+                .map(this::guardForBatch)
+                .toList()).join();
+
+        ConfigDO config = configService.getCreate(appId);
+        Map<String, List<byte[]>> addresses = new HashMap<>();
+        for(int i = 0; i < req.size(); i++){
+            IdAOBatchRsp entry = rsp.get(i);
+            if(entry.getError() != null) continue;
+            String customerToken = req.get(i).getCustomerToken();
+            try {
+                jwksService.guard(entry.getId(),
+                        customerToken == null ? "" : customerToken.replace("Bearer: ", ""),
+                        config);
+                addresses.computeIfAbsent(entry.getId(), k -> new ArrayList<>())
+                        .add(B64Url.decode(entry.getAddress()));
+            } catch (ApiException e) {
+                entry.setError("Invalid token");
+            }
+        }
+        if(addresses.isEmpty()) return rsp;
+
+        IdBatchResult saved = batchRepository.save(config, addresses, signService::generate,
+                result -> result.getAdded().forEach((id, list) ->
+                        changeService.append(ChangeService.OPERATION_ADD, appId, id, list)));
+        addresses.keySet().forEach(id -> cache.invalidate(appId, id));
+        addresses.forEach((id, list) -> {
+            bloom.put(appId, id.getBytes(StandardCharsets.UTF_8));
+            addressService.index(appId, list);
+        });
+        if(!saved.getCreated().isEmpty())
+            usageService.increment(appId, saved.getCreated().size());
+        rsp.stream()
+                .filter(entry -> entry.getError() == null)
+                .forEach(entry -> entry.setSignKey(
+                        Base64.getEncoder().encodeToString(saved.getSignKeys().get(entry.getId()))));
+        return rsp;
+    }
+
     @Transactional
     public void delete(String appId, String id){
+        cache.invalidate(appId, id);
         Optional<IdDO> found = repository.getByCustomerIdAndConfigAppId(id, appId);
         if(found.isPresent()){
+            changeService.append(ChangeService.OPERATION_DELETE, appId, id, found.get().getAddresses()
+                    .stream()
+                    .map(AddressDO::getAddress)
+                    .toList());
             addressService.deleteById(found.get());
             signService.deleteAllById(found.get());
             repository.deleteByCid(found.get().getCid());
@@ -130,19 +213,68 @@ public class IdService {
     }
 
     public IdAORspKey pubKey(String appId, String id){
-        Optional<IdDO> found = repository.getByCustomerIdAndConfigAppId(id, appId);
-        if(found.isPresent()){
-            IdAORspKey rsp = new IdAORspKey();
-            rsp.setKey(signService.getPublicKey(found.get()));
+        if(!bloom.mightContain(appId, id.getBytes(StandardCharsets.UTF_8))) return null;
+        IdCacheEntry entry = cache.get(appId, id, () -> load(appId, id));
+        if(entry == null) return null;
+        IdAORspKey rsp = new IdAORspKey();
+        rsp.setKey(entry.getPubKey(signService::getPublicKey));
+        return rsp;
+    }
+
+    public JWKSet jwks(String appId, String id){
+        if(!bloom.mightContain(appId, id.getBytes(StandardCharsets.UTF_8))) return null;
+        return signService.getJwks(appId, id, jwksKeys);
+    }
+
+    @Override
+    public void close() {
+        batchPool.shutdown();
+    }
+
+    private IdCacheEntry load(String appId, String id){
+        List<IdView> view = repository.getView(appId, id);
+        return view.isEmpty() ? null : toEntry(view);
+    }
+
+    private boolean isMember(List<IdView> view){
+        return !view.isEmpty() && Boolean.TRUE.equals(view.get(0).getMember());
+    }
+
+    private IdCacheEntry toEntry(List<IdView> view){
+        Set<String> addresses = view.stream()
+                .map(IdView::getAddress)
+                .filter(Objects::nonNull)
+                .map(B64Url::encode)
+                .collect(Collectors.toSet());
+        return new IdCacheEntry(view.get(0).getCid(), addresses, view.get(0).getSignKey(), view.get(0).getPublicKey());
+    }
+
+    private IdAOBatchRsp guardForBatch(IdAOBatchReq req){
+        IdAOBatchRsp rsp = new IdAOBatchRsp();
+        rsp.setId(req.getId());
+        rsp.setAddress(req.getAddress());
+        IdPubKey pubKey;
+        try {
+            pubKey = guardForSignature(new AddressSignature(req.getSignature()));
+        } catch (ApiException e) {
+            rsp.setError("Failed to validate key/signature pair");
             return rsp;
-        }else
-            return null;
+        }
+        try {
+            guardForAddress(req.getAddress(), pubKey);
+        } catch (ApiException | IllegalArgumentException e) {
+            rsp.setError("Public key does not match the address provided");
+        }
+        return rsp;
     }
 
-    private void guardForSignature(AddressSignature signature){
+    private IdPubKey guardForSignature(AddressSignature signature){
         try{
-            RSAPublicKey publicKey = RSAFacade.decodePublicKey(Base64.getDecoder().decode(signature.getPubKey()));
-            boolean isValid = RSAFacade.verify(publicKey, signature.getStringToSign(), signature.getSignature());
+            ByteBuffer digest = signatureCache.digest(signature);
+            IdPubKey verified = signatureCache.get(digest);
+            if(verified != null) return verified;
+            IdPubKey pubKey = pubKeyCache.get(signature.getPubKeyBytes());
+            boolean isValid = RSAFacade.verify(pubKey.getKey(), signature.getStringToSign(), signature.getSignature());
             if(!isValid)
                 throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                         .message("Failed to validate key/signature paid")
@@ -151,6 +283,8 @@ public class IdService {
                                 "stringToSign", signature.getStringToSign(),
                                 "signature", signature.getSignature())
                         .build();
+            signatureCache.put(digest, pubKey);
+            return pubKey;
         } catch (IOException | IllegalArgumentException e) {
             throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                     .message("Failed to validate key/signature paid")
@@ -160,20 +294,12 @@ public class IdService {
         }
     }
 
-    private void guardForAddress(String address, String pubKey) {
-        try {
-            byte[] addressBytes = B64Url.decode(address);
-            byte[] hashedKey = SHA3Facade.sha256(Base64.getDecoder().decode(pubKey));
-            if(!Arrays.equals(addressBytes, hashedKey)){
-                throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
-                        .message("Address validation failed")
-                        .detail("Public key does not match the address provided")
-                        .build();
-            }
-        }catch (NoSuchAlgorithmException e){
-            throw new ApiExceptionBuilder(HttpStatus.UNPROCESSABLE_ENTITY)
+    private void guardForAddress(String address, IdPubKey pubKey) {
+        byte[] addressBytes = B64Url.decode(address);
+        if(!Arrays.equals(addressBytes, pubKey.getAddress())){
+            throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                     .message("Address validation failed")
-                    .detail(e.getMessage())
+                    .detail("Public key does not match the address provided")
                     .build();
         }
     }
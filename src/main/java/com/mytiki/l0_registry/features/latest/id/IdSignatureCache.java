@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mytiki.l0_registry.utilities.AddressSignature;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+public class IdSignatureCache {
+    private final Cache<ByteBuffer, IdPubKey> cache;
+
+    public IdSignatureCache(long maxSize, Duration ttl, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "l0_registry.id.signature");
+    }
+
+    public ByteBuffer digest(AddressSignature signature) {
+        return ByteBuffer.wrap(SHA3Facade.sha256(signature.getHeader().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public IdPubKey get(ByteBuffer digest) {
+        return cache.getIfPresent(digest);
+    }
+
+    public void put(ByteBuffer digest, IdPubKey verified) {
+        cache.put(digest, verified);
+    }
+}
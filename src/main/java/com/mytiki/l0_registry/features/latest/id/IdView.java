@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.id;
+
+public interface IdView {
+    Long getCid();
+    Boolean getMember();
+    byte[] getSignKey();
+    byte[] getPublicKey();
+    byte[] getAddress();
+}
@@ -8,12 +8,22 @@ package com.mytiki.l0_registry.features.latest.jwks;
 import com.mytiki.l0_registry.features.latest.config.ConfigConfig;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.utilities.Constants;
+import com.mytiki.l0_registry.utilities.HttpClientPool;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 @EnableJpaRepositories(JwksConfig.PACKAGE_PATH)
 @EntityScan(JwksConfig.PACKAGE_PATH)
 public class JwksConfig {
@@ -22,7 +32,54 @@ public class JwksConfig {
     @Bean
     public JwksService jwksService(
             @Autowired JwksRepository repository,
-            @Autowired RestTemplateBuilder restTemplateBuilder){
-        return new JwksService(repository, restTemplateBuilder.build(), 3600);
+            @Autowired ConfigService configService,
+            @Autowired RestTemplateBuilder restTemplateBuilder,
+            @Autowired @Qualifier("jwksHttp") HttpClientPool http,
+            @Value("${com.mytiki.l0_registry.jwks.cache.ttl_seconds}") int cacheSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.cache.min_ttl_seconds}") long minTtlSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.cache.max_ttl_seconds}") long maxTtlSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.cache.size}") long cacheSize,
+            @Value("${com.mytiki.l0_registry.jwks.token.cache_size}") long tokenCacheSize,
+            @Value("${com.mytiki.l0_registry.jwks.refresh.interval_seconds}") long refreshSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.refresh.unknown_kid_seconds}") long unknownKidSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.fetch.timeout_ms}") long fetchTimeoutMs,
+            @Value("${com.mytiki.l0_registry.jwks.fetch.threads}") int fetchThreads,
+            @Value("${com.mytiki.l0_registry.jwks.backoff.base_seconds}") long backoffSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.backoff.max_seconds}") long maxBackoffSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new JwksService(repository, configService, restTemplateBuilder.requestFactory(() -> http).build(),
+                cacheSeconds, Duration.ofSeconds(minTtlSeconds), Duration.ofSeconds(maxTtlSeconds), cacheSize, tokenCacheSize,
+                Duration.ofSeconds(refreshSeconds), Duration.ofSeconds(unknownKidSeconds),
+                Duration.ofMillis(fetchTimeoutMs), fetchThreads,
+                Duration.ofSeconds(backoffSeconds), Duration.ofSeconds(maxBackoffSeconds), meterRegistry);
+    }
+
+    @Bean
+    public HealthIndicator jwksHealthIndicator(@Autowired JwksService jwksService){
+        return () -> {
+            Map<String, JwksHealth> failing = jwksService.health().entrySet().stream()
+                    .filter(entry -> entry.getValue().getFailures() > 0)
+                    .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+            return Health.up()
+                    .withDetail("endpoints", jwksService.health().size())
+                    .withDetail("failing", failing)
+                    .build();
+        };
+    }
+
+    @Bean
+    public HttpClientPool jwksHttp(
+            @Value("${com.mytiki.l0_registry.jwks.http.max_connections}") int maxConnections,
+            @Value("${com.mytiki.l0_registry.jwks.http.max_per_host}") int maxPerHost,
+            @Value("${com.mytiki.l0_registry.jwks.http.connect_timeout_ms}") long connectTimeoutMs,
+            @Value("${com.mytiki.l0_registry.jwks.http.read_timeout_ms}") long readTimeoutMs,
+            @Value("${com.mytiki.l0_registry.jwks.http.pool_timeout_ms}") long poolTimeoutMs,
+            @Value("${com.mytiki.l0_registry.jwks.http.keep_alive_seconds}") long keepAliveSeconds,
+            @Value("${com.mytiki.l0_registry.jwks.http.circuit.failures}") int circuitFailures,
+            @Value("${com.mytiki.l0_registry.jwks.http.circuit.open_seconds}") long circuitOpenSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new HttpClientPool("jwks", maxConnections, maxPerHost, Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), Duration.ofMillis(poolTimeoutMs), Duration.ofSeconds(keepAliveSeconds),
+                circuitFailures, Duration.ofSeconds(circuitOpenSeconds), meterRegistry);
     }
 }
@@ -18,6 +18,7 @@ public class JwksDO implements Serializable {
     private String endpoint;
     private String keySet;
     private ZonedDateTime modified;
+    private ZonedDateTime expires;
     private ZonedDateTime created;
 
     @Id
@@ -58,6 +59,15 @@ public class JwksDO implements Serializable {
         this.modified = modified;
     }
 
+    @Column(name = "expires_utc")
+    public ZonedDateTime getExpires() {
+        return expires;
+    }
+
+    public void setExpires(ZonedDateTime expires) {
+        this.expires = expires;
+    }
+
     @Column(name = "created_utc")
     public ZonedDateTime getCreated() {
         return created;
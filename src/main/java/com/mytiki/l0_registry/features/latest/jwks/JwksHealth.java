@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.jwks;
+
+import java.time.Instant;
+
+public class JwksHealth {
+    private int failures;
+    private String lastError;
+    private Instant lastFailure;
+    private Instant lastSuccess;
+    private Instant retryAt;
+
+    public synchronized int getFailures() {
+        return failures;
+    }
+
+    public synchronized String getLastError() {
+        return lastError;
+    }
+
+    public synchronized Instant getLastFailure() {
+        return lastFailure;
+    }
+
+    public synchronized Instant getLastSuccess() {
+        return lastSuccess;
+    }
+
+    public synchronized Instant getRetryAt() {
+        return retryAt;
+    }
+
+    public synchronized boolean isBackingOff() {
+        return retryAt != null && Instant.now().isBefore(retryAt);
+    }
+
+    synchronized int failure(String error) {
+        lastError = error;
+        lastFailure = Instant.now();
+        return ++failures;
+    }
+
+    synchronized void backoff(Instant retryAt) {
+        this.retryAt = retryAt;
+    }
+
+    synchronized void success() {
+        failures = 0;
+        lastError = null;
+        retryAt = null;
+        lastSuccess = Instant.now();
+    }
+}
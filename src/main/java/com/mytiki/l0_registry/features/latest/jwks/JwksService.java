@@ -5,10 +5,18 @@
 
 package com.mytiki.l0_registry.features.latest.jwks;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.mytiki.l0_registry.features.latest.config.ConfigDO;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
+import com.mytiki.l0_registry.utilities.B64Url;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
 import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSObject;
+import com.nimbusds.jose.jwk.JWK;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.KeyType;
 import com.nimbusds.jose.jwk.KeyUse;
@@ -16,54 +24,175 @@ import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
 import com.nimbusds.jose.proc.JWSVerificationKeySelector;
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
 import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.jwt.*;
-import org.springframework.web.client.ResourceAccessException;
 import org.springframework.web.client.RestTemplate;
 
 import java.lang.invoke.MethodHandles;
 import java.net.URI;
-import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.Duration;
+import java.time.Instant;
 import java.time.ZonedDateTime;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
-public class JwksService {
+public class JwksService implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+    private static final double REFRESH_RATIO = 0.8;
+
     private final int cacheSeconds;
+    private final Duration minTtl;
+    private final Duration maxTtl;
+    private final Duration unknownKidInterval;
+    private final Duration fetchTimeout;
+    private final Duration backoff;
+    private final Duration maxBackoff;
     private final JwksRepository repository;
+    private final ConfigService configService;
     private final RestTemplate client;
+    private final LoadingCache<String, Decoder> decoders;
+    private final Cache<String, Verified> verified;
+    private final Map<String, Instant> forced = new ConcurrentHashMap<>();
+    private final Map<String, JwksHealth> health = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService fetcher;
+    private final Counter refreshed;
+    private final Counter unknownKid;
+    private final Counter failed;
+    private final Counter timedOut;
 
-    public JwksService(JwksRepository repository, RestTemplate client, int cacheSeconds) {
+    public JwksService(
+            JwksRepository repository,
+            ConfigService configService,
+            RestTemplate client,
+            int cacheSeconds,
+            Duration minTtl,
+            Duration maxTtl,
+            long cacheSize,
+            long tokenCacheSize,
+            Duration refreshInterval,
+            Duration unknownKidInterval,
+            Duration fetchTimeout,
+            int fetchThreads,
+            Duration backoff,
+            Duration maxBackoff,
+            MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.configService = configService;
         this.client = client;
         this.cacheSeconds = cacheSeconds;
+        this.minTtl = minTtl;
+        this.maxTtl = maxTtl;
+        this.unknownKidInterval = unknownKidInterval;
+        this.fetchTimeout = fetchTimeout;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.decoders = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfter(new Expiry<String, Decoder>() {
+                    @Override
+                    public long expireAfterCreate(String endpoint, Decoder decoder, long currentTime) {
+                        return decoder.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(
+                            String endpoint, Decoder decoder, long currentTime, long currentDuration) {
+                        return decoder.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(
+                            String endpoint, Decoder decoder, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build(this::load);
+        CaffeineCacheMetrics.monitor(meterRegistry, decoders, "l0_registry.jwks.decoder");
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(tokenCacheSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String digest, Verified token, long currentTime) {
+                        return token.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(
+                            String digest, Verified token, long currentTime, long currentDuration) {
+                        return token.ttl().toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(
+                            String digest, Verified token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "l0_registry.jwks.token");
+        this.refreshed = Counter.builder("l0_registry.jwks.refresh")
+                .description("Key sets fetched from customer endpoints")
+                .register(meterRegistry);
+        this.unknownKid = Counter.builder("l0_registry.jwks.unknown_kid")
+                .description("Refreshes forced by a token signed with an unknown kid")
+                .register(meterRegistry);
+        this.failed = Counter.builder("l0_registry.jwks.failure")
+                .description("Key set fetches that failed")
+                .register(meterRegistry);
+        this.timedOut = Counter.builder("l0_registry.jwks.timeout")
+                .description("Request path fetches that outlived the fetch timeout")
+                .register(meterRegistry);
+        Gauge.builder("l0_registry.jwks.backoff", health,
+                        map -> map.values().stream().filter(JwksHealth::isBackingOff).count())
+                .description("Endpoints waiting out a failure backoff")
+                .register(meterRegistry);
+        this.fetcher = new ThreadPoolExecutor(fetchThreads, fetchThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(fetchThreads * 16), new CustomizableThreadFactory("jwks-fetch-"));
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("jwks-refresh-"));
+        scheduler.scheduleWithFixedDelay(this::refreshAll,
+                refreshInterval.toSeconds(), refreshInterval.toSeconds(), TimeUnit.SECONDS);
     }
 
     public void guard(String id, String token, ConfigDO config){
         if(config.getJwksEndpoint() == null) return;
         try {
-            JWKSet jwks = get(config.getJwksEndpoint());
-            if (jwks != null) {
-                JwtDecoder decoder = buildDecoder(jwks);
-                Jwt jwt = decoder.decode(token);
-                if(config.getVerifySubject() && !jwt.getSubject().equals(id)){
-                    throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
-                            .message("Invalid sub claim")
-                            .build();
+            Decoder decoder = decoders.get(config.getJwksEndpoint());
+            if (decoder.decoder() == null) return;
+            String digest = digest(config.getJwksEndpoint(), token);
+            Verified cached = verified.getIfPresent(digest);
+            if (cached == null || !cached.fingerprint().equals(decoder.fingerprint())
+                    || cached.ttl().isZero()) {
+                if (!decoder.knows(kid(token))) {
+                    Decoder updated = refreshUnknownKid(config.getJwksEndpoint());
+                    if(updated != null) decoder = updated;
                 }
+                Jwt jwt = decoder.decoder().decode(token);
+                cached = new Verified(jwt.getSubject(), decoder.fingerprint(), jwt.getExpiresAt());
+                if (jwt.getExpiresAt() != null) verified.put(digest, cached);
+            }
+            if(config.getVerifySubject() && (cached.subject() == null || !cached.subject().equals(id))){
+                throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
+                        .message("Invalid sub claim")
+                        .build();
             }
-        } catch (URISyntaxException | ParseException e) {
-            logger.error("Failed to fetch endpoint, skipping.", e);
         } catch (JwtException e){
             throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                     .message("Invalid token")
@@ -71,46 +200,212 @@ public class JwksService {
         }
     }
 
-    private JWKSet get(String endpoint) throws URISyntaxException, ParseException {
+    public void refreshAll(){
+        try {
+            for (String endpoint : configService.getJwksEndpoints()) {
+                Decoder decoder = decoders.get(endpoint);
+                if (!Instant.now().isBefore(decoder.refreshAt())) refresh(endpoint);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh key sets", e);
+        }
+    }
+
+    public Map<String, JwksHealth> health(){
+        return Collections.unmodifiableMap(health);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        fetcher.shutdownNow();
+    }
+
+    private Decoder refreshUnknownKid(String endpoint) {
+        Instant now = Instant.now();
+        boolean[] allowed = {false};
+        forced.compute(endpoint, (key, last) -> {
+            if (last != null && now.isBefore(last.plus(unknownKidInterval))) return last;
+            allowed[0] = true;
+            return now;
+        });
+        if (!allowed[0] || isBackingOff(endpoint)) return null;
+        unknownKid.increment();
+        Decoder decoder = await(endpoint, repository.getByEndpoint(endpoint), true);
+        if (decoder != null) decoders.put(endpoint, decoder);
+        return decoder;
+    }
+
+    private Decoder refresh(String endpoint) {
+        if (isBackingOff(endpoint)) return null;
+        Decoder decoder = fetch(endpoint, repository.getByEndpoint(endpoint));
+        if (decoder != null) decoders.put(endpoint, decoder);
+        return decoder;
+    }
+
+    private Decoder load(String endpoint) {
         Optional<JwksDO> saved = repository.getByEndpoint(endpoint);
-        if(saved.isPresent() && saved.get().getEndpoint() != null && !saved.get().getEndpoint().isEmpty() &&
-                (ZonedDateTime.now().toEpochSecond() - saved.get().getModified().toEpochSecond()) < cacheSeconds){
-            return JWKSet.parse(saved.get().getKeySet());
-        }else {
-            JWKSet keySet = fetch(new URI(endpoint));
-            if(keySet != null) {
-                JwksDO toSave = saved.orElse(null);
-                ZonedDateTime now = ZonedDateTime.now();
-                if(saved.isEmpty()){
-                    toSave = new JwksDO();
-                    toSave.setEndpoint(endpoint);
-                    toSave.setCreated(now);
-                }
-                toSave.setKeySet(keySet.toString());
-                toSave.setModified(now);
-                repository.save(toSave);
+        try {
+            if(saved.isPresent() && saved.get().getKeySet() != null && !saved.get().getKeySet().isEmpty()) {
+                ZonedDateTime modified = saved.get().getModified();
+                ZonedDateTime expires = saved.get().getExpires() != null ?
+                        saved.get().getExpires() : modified.plusSeconds(cacheSeconds);
+                if(ZonedDateTime.now().isBefore(expires))
+                    return compile(JWKSet.parse(saved.get().getKeySet()), modified.toInstant(), expires.toInstant());
+            }
+        } catch (ParseException e) {
+            logger.error("Failed to parse saved key set, refetching.", e);
+        }
+        boolean stored = saved.isPresent() && saved.get().getKeySet() != null && !saved.get().getKeySet().isEmpty();
+        Decoder decoder = isBackingOff(endpoint) ? null : await(endpoint, saved, stored);
+        if (decoder != null) return decoder;
+        JwksHealth state = health.get(endpoint);
+        Instant until = state != null && state.isBackingOff() ? state.getRetryAt() : Instant.now().plus(backoff);
+        if (stored) {
+            try {
+                return compile(JWKSet.parse(saved.get().getKeySet()), Instant.now(), until);
+            } catch (ParseException e) {
+                logger.error("Failed to parse saved key set, skipping.", e);
             }
-            return keySet;
         }
+        return new Decoder(null, null, Set.of(), false, until, until);
     }
 
-    private JWKSet fetch(URI endpoint){
+    private Decoder await(String endpoint, Optional<JwksDO> saved, boolean bounded) {
+        CompletableFuture<Decoder> future;
+        try {
+            future = CompletableFuture.supplyAsync(() -> fetch(endpoint, saved), fetcher);
+        } catch (RejectedExecutionException e) {
+            return bounded ? null : fetch(endpoint, saved);
+        }
         try {
-            ResponseEntity<String> response = client.getForEntity(endpoint, String.class);
+            if (!bounded) return future.get();
+            return future.get(fetchTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            logger.warn("Fetch exceeded " + fetchTimeout.toMillis() + "ms, using stored key set: " + endpoint);
+            future.thenAcceptAsync(decoder -> {
+                if (decoder != null) decoders.put(endpoint, decoder);
+            }, fetcher);
+        } catch (ExecutionException e) {
+            logger.error("Failed to fetch endpoint, skipping.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private Decoder fetch(String endpoint, Optional<JwksDO> saved) {
+        try {
+            ResponseEntity<String> response = client.getForEntity(new URI(endpoint), String.class);
             if(response.getStatusCode().is2xxSuccessful()){
                 JWKSet jwkSet = JWKSet.parse(response.getBody());
-                return new JWKSet(jwkSet.getKeys()
+                JWKSet keySet = new JWKSet(jwkSet.getKeys()
                         .stream()
                         .filter(jwk -> jwk.getKeyUse().equals(KeyUse.SIGNATURE))
                         .filter(jwk -> jwk.getKeyType().equals(KeyType.EC) || jwk.getKeyType().equals(KeyType.RSA))
                         .toList());
+                ZonedDateTime now = ZonedDateTime.now();
+                ZonedDateTime expires = now.plus(ttl(response.getHeaders()));
+                JwksDO toSave = saved.orElse(null);
+                if(saved.isEmpty()){
+                    toSave = new JwksDO();
+                    toSave.setEndpoint(endpoint);
+                    toSave.setCreated(now);
+                }
+                toSave.setKeySet(keySet.toString());
+                toSave.setModified(now);
+                toSave.setExpires(expires);
+                try {
+                    repository.save(toSave);
+                } catch (DataIntegrityViolationException e) {
+                    JwksDO stored = repository.getByEndpoint(endpoint).orElseThrow(() -> e);
+                    keySet = JWKSet.parse(stored.getKeySet());
+                    now = stored.getModified();
+                    expires = stored.getExpires() != null ? stored.getExpires() : now.plusSeconds(cacheSeconds);
+                }
+                refreshed.increment();
+                health.computeIfAbsent(endpoint, key -> new JwksHealth()).success();
+                return compile(keySet, now.toInstant(), expires.toInstant());
             }
+            return failure(endpoint, "Unexpected status: " + response.getStatusCode());
         } catch (Exception e) {
             logger.error("Failed to fetch endpoint, skipping.", e);
+            return failure(endpoint, e.getMessage());
         }
+    }
+
+    private Decoder failure(String endpoint, String error){
+        failed.increment();
+        JwksHealth state = health.computeIfAbsent(endpoint, key -> new JwksHealth());
+        int failures = state.failure(error);
+        long ceiling = Math.min(maxBackoff.toMillis(), backoff.toMillis() << Math.min(failures - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        state.backoff(Instant.now().plusMillis(delay));
+        logger.warn("Backing off " + endpoint + " for " + delay + "ms after " + failures + " failure(s)");
         return null;
     }
 
+    private boolean isBackingOff(String endpoint){
+        JwksHealth state = health.get(endpoint);
+        return state != null && state.isBackingOff();
+    }
+
+    private Duration ttl(HttpHeaders headers){
+        String cacheControl = headers.getCacheControl();
+        if(cacheControl != null) {
+            for (String directive : cacheControl.split(",")) {
+                String value = directive.trim().toLowerCase();
+                if(value.equals("no-cache") || value.equals("no-store")) return minTtl;
+                if(value.startsWith("max-age=")) {
+                    try {
+                        long age = Optional.ofNullable(headers.getFirst(HttpHeaders.AGE))
+                                .map(Long::parseLong)
+                                .orElse(0L);
+                        return clamp(Duration.ofSeconds(Long.parseLong(value.substring(8)) - age));
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+        }
+        long expires = headers.getExpires();
+        if(expires > 0) {
+            long date = headers.getDate();
+            return clamp(Duration.ofMillis(expires - (date > 0 ? date : System.currentTimeMillis())));
+        }
+        return clamp(Duration.ofSeconds(cacheSeconds));
+    }
+
+    private Duration clamp(Duration ttl){
+        if(ttl.compareTo(minTtl) < 0) return minTtl;
+        if(ttl.compareTo(maxTtl) > 0) return maxTtl;
+        return ttl;
+    }
+
+    private Decoder compile(JWKSet jwkSet, Instant fetched, Instant expires){
+        Duration lifetime = Duration.between(fetched, expires);
+        Set<String> kids = new HashSet<>();
+        boolean anonymous = false;
+        for(JWK jwk : jwkSet.getKeys()) {
+            if(jwk.getKeyID() == null) anonymous = true;
+            else kids.add(jwk.getKeyID());
+        }
+        String fingerprint = B64Url.encode(SHA3Facade.sha256(jwkSet.toString().getBytes(StandardCharsets.UTF_8)));
+        return new Decoder(buildDecoder(jwkSet), fingerprint, kids, anonymous, expires,
+                fetched.plusMillis((long) (lifetime.toMillis() * REFRESH_RATIO)));
+    }
+
+    private static String digest(String endpoint, String token){
+        return B64Url.encode(SHA3Facade.sha256((endpoint + "." + token).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String kid(String token){
+        try {
+            return JWSObject.parse(token).getHeader().getKeyID();
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
     private JwtDecoder buildDecoder(JWKSet jwkSet){
         DefaultJWTProcessor<SecurityContext> jwtProcessor = new DefaultJWTProcessor<>();
         jwtProcessor.setJWSKeySelector(new JWSVerificationKeySelector<>(
@@ -125,4 +420,28 @@ public class JwksService {
         decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(validators));
         return decoder;
     }
+
+    private record Verified(String subject, String fingerprint, Instant expires) {
+        Duration ttl() {
+            Duration ttl = Duration.between(Instant.now(), expires);
+            return ttl.isNegative() ? Duration.ZERO : ttl;
+        }
+    }
+
+    private record Decoder(
+            JwtDecoder decoder,
+            String fingerprint,
+            Set<String> kids,
+            boolean anonymous,
+            Instant expires,
+            Instant refreshAt) {
+        Duration ttl() {
+            Duration ttl = Duration.between(Instant.now(), expires);
+            return ttl.isNegative() ? Duration.ZERO : ttl;
+        }
+
+        boolean knows(String kid) {
+            return kid == null || anonymous || kids.contains(kid);
+        }
+    }
 }
@@ -6,8 +6,11 @@
 package com.mytiki.l0_registry.features.latest.sign;
 
 
+import com.mytiki.l0_registry.features.latest.id.IdCache;
 import com.mytiki.l0_registry.utilities.Constants;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
@@ -18,7 +21,18 @@ public class SignConfig {
     public static final String PACKAGE_PATH = Constants.PACKAGE_FEATURES_LATEST_DOT_PATH + ".sign";
 
     @Bean
-    public SignService signService(@Autowired SignRepository repository){
-        return new SignService(repository);
+    public SignPool signPool(
+            @Value("${com.mytiki.l0_registry.sign.pool.size}") int size,
+            @Value("${com.mytiki.l0_registry.sign.pool.threads}") int threads,
+            @Autowired MeterRegistry meterRegistry){
+        return new SignPool(size, threads, meterRegistry);
+    }
+
+    @Bean
+    public SignService signService(
+            @Autowired SignRepository repository,
+            @Autowired SignPool pool,
+            @Autowired IdCache idCache){
+        return new SignService(repository, pool, idCache);
     }
 }
@@ -17,6 +17,8 @@ public class SignDO implements Serializable {
     private Long keyId;
     private IdDO id;
     private byte[] privateKey;
+    private byte[] publicKey;
+    private String thumbprint;
     private ZonedDateTime created;
 
     @Id
@@ -49,6 +51,24 @@ public class SignDO implements Serializable {
         this.privateKey = privateKey;
     }
 
+    @Column(name = "public_key")
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    public void setPublicKey(byte[] publicKey) {
+        this.publicKey = publicKey;
+    }
+
+    @Column(name = "key_thumbprint")
+    public String getThumbprint() {
+        return thumbprint;
+    }
+
+    public void setThumbprint(String thumbprint) {
+        this.thumbprint = thumbprint;
+    }
+
     @Column(name = "created_utc")
     public ZonedDateTime getCreated() {
         return created;
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.sign;
+
+import com.mytiki.l0_registry.utilities.RSAFacade;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+import org.bouncycastle.asn1.pkcs.RSAPrivateKey;
+import org.bouncycastle.asn1.pkcs.RSAPublicKey;
+
+import java.io.IOException;
+
+public class SignKey {
+    private final byte[] privateKey;
+    private final byte[] publicKey;
+    private final String thumbprint;
+
+    public SignKey(byte[] privateKey, byte[] publicKey, String thumbprint) {
+        this.privateKey = privateKey;
+        this.publicKey = publicKey;
+        this.thumbprint = thumbprint;
+    }
+
+    public static SignKey generate() throws JOSEException {
+        RSAKey keypair = RSAFacade.generateKey();
+        RSAPublicKey publicKey = new RSAPublicKey(keypair.getModulus().decodeToBigInteger(),
+                keypair.getPublicExponent().decodeToBigInteger());
+        try {
+            return new SignKey(keypair.toRSAPrivateKey().getEncoded(), publicKey.getEncoded(),
+                    keypair.computeThumbprint().toString());
+        } catch (IOException e) {
+            throw new JOSEException("Failed to encode public key", e);
+        }
+    }
+
+    public static SignKey derive(byte[] privateKey) throws IOException {
+        RSAPrivateKey decoded = RSAFacade.decodePrivateKey(privateKey);
+        RSAPublicKey publicKey = RSAFacade.toPublic(decoded);
+        return new SignKey(privateKey, publicKey.getEncoded(), thumbprint(publicKey));
+    }
+
+    public static RSAKey toJwk(byte[] publicKey, String thumbprint) {
+        RSAPublicKey decoded = RSAPublicKey.getInstance(publicKey);
+        return new RSAKey.Builder(Base64URL.encode(decoded.getModulus()), Base64URL.encode(decoded.getPublicExponent()))
+                .keyID(thumbprint)
+                .keyUse(KeyUse.SIGNATURE)
+                .algorithm(JWSAlgorithm.RS256)
+                .build();
+    }
+
+    private static String thumbprint(RSAPublicKey publicKey) throws IOException {
+        try {
+            return new RSAKey.Builder(Base64URL.encode(publicKey.getModulus()),
+                    Base64URL.encode(publicKey.getPublicExponent()))
+                    .build()
+                    .computeThumbprint()
+                    .toString();
+        } catch (JOSEException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public byte[] getPrivateKey() {
+        return privateKey;
+    }
+
+    public byte[] getPublicKey() {
+        return publicKey;
+    }
+
+    public String getThumbprint() {
+        return thumbprint;
+    }
+}
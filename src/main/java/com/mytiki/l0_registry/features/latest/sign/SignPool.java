@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.sign;
+
+import com.nimbusds.jose.JOSEException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SignPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final int capacity;
+    private final BlockingQueue<SignKey> pool;
+    private final ExecutorService executor;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final Counter refilled;
+    private final Counter fallback;
+
+    public SignPool(int capacity, int threads, MeterRegistry meterRegistry) {
+        this.capacity = capacity;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+        this.executor = Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("sign-pool-"));
+        Gauge.builder("l0_registry.sign.pool.depth", pool, BlockingQueue::size)
+                .description("Pre-generated sign keys ready for use")
+                .register(meterRegistry);
+        this.refilled = Counter.builder("l0_registry.sign.pool.refill")
+                .description("Sign keys generated in the background")
+                .register(meterRegistry);
+        this.fallback = Counter.builder("l0_registry.sign.pool.fallback")
+                .description("Sign keys generated inline because the pool was empty")
+                .register(meterRegistry);
+        refill();
+    }
+
+    public SignKey take() throws JOSEException {
+        SignKey key = pool.poll();
+        refill();
+        if(key != null) return key;
+        fallback.increment();
+        return SignKey.generate();
+    }
+
+    public int size() {
+        return pool.size();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private void refill() {
+        int queued;
+        while((queued = pending.get()) + pool.size() < capacity) {
+            if(pending.compareAndSet(queued, queued + 1)) {
+                try {
+                    executor.execute(this::generate);
+                } catch (RejectedExecutionException e) {
+                    pending.decrementAndGet();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void generate() {
+        try {
+            if(pool.offer(SignKey.generate())) refilled.increment();
+        } catch (JOSEException e) {
+            logger.error("Failed to pre-generate sign key", e);
+        } finally {
+            pending.decrementAndGet();
+        }
+    }
+}
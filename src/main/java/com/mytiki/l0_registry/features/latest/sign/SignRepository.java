@@ -6,11 +6,15 @@
 package com.mytiki.l0_registry.features.latest.sign;
 
 import com.mytiki.l0_registry.features.latest.id.IdDO;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SignRepository extends JpaRepository<SignDO, Long> {
     Optional<SignDO> getFirstByIdOrderByCreatedDesc(IdDO id);
     void deleteAllById(IdDO id);
+    List<SignView> findByIdCustomerIdAndIdConfigAppIdOrderByCreatedDesc(
+            String customerId, String appId, Pageable pageable);
 }
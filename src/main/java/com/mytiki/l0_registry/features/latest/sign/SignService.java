@@ -5,38 +5,56 @@
 
 package com.mytiki.l0_registry.features.latest.sign;
 
+import com.mytiki.l0_registry.features.latest.id.IdCache;
 import com.mytiki.l0_registry.features.latest.id.IdDO;
 import com.mytiki.l0_registry.utilities.RSAFacade;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
 import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSet;
 import org.bouncycastle.asn1.pkcs.RSAPrivateKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
 
 public class SignService {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private final SignRepository repository;
+    private final SignPool pool;
+    private final IdCache idCache;
 
-    public SignService(SignRepository repository) {
+    public SignService(SignRepository repository, SignPool pool, IdCache idCache) {
         this.repository = repository;
+        this.pool = pool;
+        this.idCache = idCache;
     }
 
     public String cycle(IdDO id){
+        SignKey key = generate();
+        SignDO save = new SignDO();
+        save.setId(id);
+        save.setCreated(ZonedDateTime.now());
+        save.setPrivateKey(key.getPrivateKey());
+        save.setPublicKey(key.getPublicKey());
+        save.setThumbprint(key.getThumbprint());
+        repository.save(save);
+        idCache.invalidate(id.getConfig().getAppId(), id.getCustomerId());
+        return Base64.getEncoder().encodeToString(save.getPrivateKey());
+    }
+
+    public SignKey generate(){
         try {
-            SignDO save = new SignDO();
-            save.setId(id);
-            save.setCreated(ZonedDateTime.now());
-            save.setPrivateKey(RSAFacade.generate());
-            repository.save(save);
-            return Base64.getEncoder().encodeToString(save.getPrivateKey());
+            return pool.take();
         } catch (JOSEException e) {
             throw new ApiExceptionBuilder(HttpStatus.UNPROCESSABLE_ENTITY)
                     .message("Key generation failed")
@@ -54,15 +72,40 @@ public class SignService {
 
     public String getPublicKey(IdDO id){
         Optional<SignDO> latest = repository.getFirstByIdOrderByCreatedDesc(id);
-        if(latest.isPresent()){
-            try {
-                 RSAPrivateKey privateKey = RSAFacade.decodePrivateKey(latest.get().getPrivateKey());
-                 return Base64.getEncoder().encodeToString(RSAFacade.toPublic(privateKey).getEncoded());
-            } catch (IOException e) {
-                logger.error("Failed to decode private key", e);
+        if(latest.isEmpty()) return null;
+        if(latest.get().getPublicKey() != null)
+            return Base64.getEncoder().encodeToString(latest.get().getPublicKey());
+        return getPublicKey(latest.get().getPrivateKey());
+    }
+
+    public JWKSet getJwks(String appId, String customerId, int limit){
+        List<SignView> keys = repository.findByIdCustomerIdAndIdConfigAppIdOrderByCreatedDesc(
+                customerId, appId, PageRequest.of(0, limit));
+        if(keys.isEmpty()) return null;
+        List<JWK> jwks = new ArrayList<>(keys.size());
+        for(SignView key : keys) {
+            if(key.getPublicKey() != null && key.getThumbprint() != null)
+                jwks.add(SignKey.toJwk(key.getPublicKey(), key.getThumbprint()));
+            else {
+                try {
+                    SignKey derived = SignKey.derive(key.getPrivateKey());
+                    jwks.add(SignKey.toJwk(derived.getPublicKey(), derived.getThumbprint()));
+                } catch (IOException e) {
+                    logger.error("Failed to decode private key", e);
+                }
             }
         }
-        return null;
+        return new JWKSet(jwks);
+    }
+
+    public String getPublicKey(byte[] signKey){
+        try {
+            RSAPrivateKey privateKey = RSAFacade.decodePrivateKey(signKey);
+            return Base64.getEncoder().encodeToString(RSAFacade.toPublic(privateKey).getEncoded());
+        } catch (IOException e) {
+            logger.error("Failed to decode private key", e);
+            return null;
+        }
     }
 
     public void deleteAllById(IdDO id){
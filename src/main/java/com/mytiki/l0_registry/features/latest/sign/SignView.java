@@ -0,0 +1,12 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.sign;
+
+public interface SignView {
+    byte[] getPrivateKey();
+    byte[] getPublicKey();
+    String getThumbprint();
+}
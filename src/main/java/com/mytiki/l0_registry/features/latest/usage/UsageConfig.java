@@ -4,14 +4,18 @@ import com.mytiki.l0_registry.features.latest.config.ConfigConfig;
 import com.mytiki.l0_registry.features.latest.config.ConfigController;
 import com.mytiki.l0_registry.features.latest.config.ConfigRepository;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
-import com.mytiki.l0_registry.l0.auth.L0AuthService;
+import com.mytiki.l0_registry.l0.auth.L0AuthCache;
 import com.mytiki.l0_registry.utilities.Constants;
 import com.stripe.Stripe;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.context.annotation.Bean;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
 
 @EnableJpaRepositories(UsageConfig.PACKAGE_PATH)
 @EntityScan(UsageConfig.PACKAGE_PATH)
@@ -26,13 +30,43 @@ public class UsageConfig {
     @Bean
     public UsageService usageService(
             @Autowired UsageRepository repository,
+            @Autowired UsageFlushRepository flushRepository,
             @Autowired ConfigService configService,
-            @Autowired L0AuthService l0AuthService,
+            @Autowired L0AuthCache l0AuthCache,
             @Value("${com.mytiki.l0_registry.usage.min_users}") int minUsers,
+            @Value("${com.mytiki.l0_registry.usage.flush.interval_ms}") long flushIntervalMs,
+            @Autowired MeterRegistry meterRegistry){
+        return new UsageService(repository, flushRepository, configService, l0AuthCache, minUsers,
+                Duration.ofMillis(flushIntervalMs), meterRegistry);
+    }
+
+    @Bean
+    public UsageOutboxRepository usageOutboxRepository(@Autowired JdbcTemplate jdbcTemplate){
+        return new UsageOutboxRepository(jdbcTemplate);
+    }
+
+    @Bean
+    public UsageReporter usageReporter(
+            @Autowired UsageOutboxRepository repository,
+            @Autowired ConfigService configService,
             @Value("${com.mytiki.l0_registry.usage.stripe.key}") String stripekey,
             @Value("${com.mytiki.l0_registry.usage.stripe.price.nu}") String nuPriceId,
-            @Value("${com.mytiki.l0_registry.usage.stripe.price.mau}") String mauPriceId){
+            @Value("${com.mytiki.l0_registry.usage.stripe.price.mau}") String mauPriceId,
+            @Value("${com.mytiki.l0_registry.usage.report.batch_size}") int batchSize,
+            @Value("${com.mytiki.l0_registry.usage.report.interval_ms}") long intervalMs,
+            @Value("${com.mytiki.l0_registry.usage.report.lease_seconds}") long leaseSeconds,
+            @Value("${com.mytiki.l0_registry.usage.report.backoff_ms}") long backoffMs,
+            @Value("${com.mytiki.l0_registry.usage.report.max_backoff_ms}") long maxBackoffMs,
+            @Value("${com.mytiki.l0_registry.usage.report.items_ttl_seconds}") long itemsTtlSeconds,
+            @Autowired MeterRegistry meterRegistry){
         Stripe.apiKey = stripekey;
-        return new UsageService(repository, configService, l0AuthService, minUsers, mauPriceId, nuPriceId);
+        return new UsageReporter(repository, configService, mauPriceId, nuPriceId, batchSize,
+                Duration.ofMillis(intervalMs), Duration.ofSeconds(leaseSeconds), Duration.ofMillis(backoffMs),
+                Duration.ofMillis(maxBackoffMs), Duration.ofSeconds(itemsTtlSeconds), meterRegistry);
+    }
+
+    @Bean
+    public UsageFlushRepository usageFlushRepository(@Autowired JdbcTemplate jdbcTemplate){
+        return new UsageFlushRepository(jdbcTemplate);
     }
 }
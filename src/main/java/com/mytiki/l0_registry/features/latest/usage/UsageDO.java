@@ -4,6 +4,7 @@ import com.mytiki.l0_registry.features.latest.config.ConfigDO;
 import jakarta.persistence.*;
 
 import java.io.Serializable;
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
 
 @Entity
@@ -12,6 +13,7 @@ public class UsageDO implements Serializable {
     private Long usageId;
     private ConfigDO config;
     private Long total;
+    private LocalDate day;
     private ZonedDateTime created;
     private ZonedDateTime modified;
 
@@ -45,6 +47,15 @@ public class UsageDO implements Serializable {
         this.total = total;
     }
 
+    @Column(name = "day")
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
     @Column(name = "created_utc")
     public ZonedDateTime getCreated() {
         return created;
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.usage;
+
+import java.time.OffsetDateTime;
+
+public class UsageEvent {
+    private final long outboxId;
+    private final String appId;
+    private final long active;
+    private final long added;
+    private final int attempts;
+    private final String batchKey;
+    private final OffsetDateTime created;
+
+    public UsageEvent(
+            long outboxId,
+            String appId,
+            long active,
+            long added,
+            int attempts,
+            String batchKey,
+            OffsetDateTime created) {
+        this.outboxId = outboxId;
+        this.appId = appId;
+        this.active = active;
+        this.added = added;
+        this.attempts = attempts;
+        this.batchKey = batchKey;
+        this.created = created;
+    }
+
+    public long getOutboxId() {
+        return outboxId;
+    }
+
+    public String getAppId() {
+        return appId;
+    }
+
+    public long getActive() {
+        return active;
+    }
+
+    public long getAdded() {
+        return added;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public String getBatchKey() {
+        return batchKey;
+    }
+
+    public OffsetDateTime getCreated() {
+        return created;
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.usage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+
+public class UsageFlushRepository {
+    private static final String UPSERT_USAGE =
+            "WITH later AS (" +
+            "UPDATE usage SET total = total + ?, modified_utc = ? WHERE config_id = ? AND day > ? " +
+            "RETURNING day, total), " +
+            "saved AS (" +
+            "INSERT INTO usage(config_id, day, total, created_utc, modified_utc) " +
+            "VALUES (?, ?, GREATEST(0, COALESCE((SELECT u.total FROM usage u WHERE u.config_id = ? " +
+            "AND u.day < ? ORDER BY u.day DESC LIMIT 1), 0) + ?), ?, ?) " +
+            "ON CONFLICT (config_id, day) DO UPDATE " +
+            "SET total = usage.total + ?, modified_utc = EXCLUDED.modified_utc " +
+            "RETURNING config_id, total) " +
+            "INSERT INTO usage_outbox(config_id, active, added, next_attempt_utc, created_utc) " +
+            "SELECT config_id, active, ?, ?, ? FROM (" +
+            "SELECT s.config_id, COALESCE((SELECT l.total FROM later l ORDER BY l.day DESC LIMIT 1), s.total) AS active " +
+            "FROM saved s) t WHERE active > ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UsageFlushRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void add(long configId, LocalDate day, long delta, long added, long reportAbove, ZonedDateTime now){
+        OffsetDateTime timestamp = now.toOffsetDateTime();
+        OffsetDateTime created = day.atStartOfDay(ZoneOffset.UTC).toOffsetDateTime();
+        jdbcTemplate.update(UPSERT_USAGE, delta, timestamp, configId, day,
+                configId, day, configId, day, delta, created, timestamp, delta,
+                added, timestamp, timestamp, reportAbove);
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.usage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.PreparedStatement;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public class UsageOutboxRepository {
+    private static final String CLAIM =
+            "UPDATE usage_outbox o SET attempts = o.attempts + 1, next_attempt_utc = ? " +
+            "FROM config c " +
+            "WHERE c.config_id = o.config_id AND o.outbox_id IN (" +
+            "SELECT outbox_id FROM usage_outbox WHERE next_attempt_utc <= ? " +
+            "ORDER BY outbox_id LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING o.outbox_id, c.app_id, o.active, o.added, o.attempts, o.batch_key, o.created_utc";
+    private static final String ASSIGN =
+            "UPDATE usage_outbox SET batch_key = ? WHERE outbox_id = ANY(?::bigint[])";
+    private static final String RETRY =
+            "UPDATE usage_outbox SET next_attempt_utc = ? WHERE outbox_id = ANY(?::bigint[])";
+    private static final String DELETE =
+            "DELETE FROM usage_outbox WHERE outbox_id = ANY(?::bigint[])";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public UsageOutboxRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public List<UsageEvent> claim(OffsetDateTime leaseUntil, int limit){
+        return jdbcTemplate.query(CLAIM, (rs, i) -> new UsageEvent(
+                rs.getLong(1),
+                rs.getString(2),
+                rs.getLong(3),
+                rs.getLong(4),
+                rs.getInt(5),
+                rs.getString(6),
+                rs.getObject(7, OffsetDateTime.class)), leaseUntil, OffsetDateTime.now(), limit);
+    }
+
+    public void assign(String batchKey, Collection<Long> ids){
+        update(ASSIGN, batchKey, ids);
+    }
+
+    public void retry(OffsetDateTime nextAttempt, Collection<Long> ids){
+        update(RETRY, nextAttempt, ids);
+    }
+
+    public void delete(Collection<Long> ids){
+        update(DELETE, null, ids);
+    }
+
+    private void update(String sql, Object param, Collection<Long> ids){
+        Long[] array = ids.toArray(Long[]::new);
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            int index = 1;
+            if(param != null) ps.setObject(index++, param);
+            ps.setArray(index, con.createArrayOf("bigint", array));
+            return ps;
+        });
+    }
+}
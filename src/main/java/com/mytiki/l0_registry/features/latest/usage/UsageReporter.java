@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.usage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.mytiki.l0_registry.features.latest.config.ConfigDO;
+import com.mytiki.l0_registry.features.latest.config.ConfigService;
+import com.stripe.exception.StripeException;
+import com.stripe.model.Subscription;
+import com.stripe.model.SubscriptionItem;
+import com.stripe.model.UsageRecord;
+import com.stripe.net.RequestOptions;
+import com.stripe.param.SubscriptionListParams;
+import com.stripe.param.UsageRecordCreateOnSubscriptionItemParams;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+public class UsageReporter implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final UsageOutboxRepository repository;
+    private final ConfigService configService;
+    private final String mauPriceId;
+    private final String nuPriceId;
+    private final int batchSize;
+    private final Duration lease;
+    private final Duration backoff;
+    private final Duration maxBackoff;
+    private final Cache<String, Items> items;
+    private final ScheduledExecutorService scheduler;
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter dropped;
+
+    public UsageReporter(
+            UsageOutboxRepository repository,
+            ConfigService configService,
+            String mauPriceId,
+            String nuPriceId,
+            int batchSize,
+            Duration interval,
+            Duration lease,
+            Duration backoff,
+            Duration maxBackoff,
+            Duration itemsTtl,
+            MeterRegistry meterRegistry) {
+        this.repository = repository;
+        this.configService = configService;
+        this.mauPriceId = mauPriceId;
+        this.nuPriceId = nuPriceId;
+        this.batchSize = batchSize;
+        this.lease = lease;
+        this.backoff = backoff;
+        this.maxBackoff = maxBackoff;
+        this.items = Caffeine.newBuilder()
+                .expireAfterWrite(itemsTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, items, "l0_registry.usage.report.items");
+        this.sent = Counter.builder("l0_registry.usage.report.sent")
+                .description("Coalesced usage reports accepted by Stripe")
+                .register(meterRegistry);
+        this.retried = Counter.builder("l0_registry.usage.report.retry")
+                .description("Usage reports rescheduled after a transient failure")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("l0_registry.usage.report.drop")
+                .description("Usage reports discarded because the app cannot be billed")
+                .register(meterRegistry);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("usage-report-"));
+        scheduler.scheduleWithFixedDelay(this::drain, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void drain() {
+        try {
+            List<UsageEvent> events;
+            do {
+                events = repository.claim(OffsetDateTime.now().plus(lease), batchSize);
+                coalesce(events).forEach(this::report);
+            } while(events.size() == batchSize);
+        } catch (RuntimeException e) {
+            logger.error("Failed to drain usage outbox", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private Map<String, List<UsageEvent>> coalesce(List<UsageEvent> events) {
+        Map<String, List<UsageEvent>> batches = new LinkedHashMap<>();
+        Map<String, List<UsageEvent>> pending = new LinkedHashMap<>();
+        for(UsageEvent event : events) {
+            if(event.getBatchKey() != null)
+                batches.computeIfAbsent(event.getBatchKey(), k -> new ArrayList<>()).add(event);
+            else
+                pending.computeIfAbsent(event.getAppId(), k -> new ArrayList<>()).add(event);
+        }
+        pending.forEach((appId, list) -> {
+            String batchKey = "l0-registry-usage-" + appId + "-" +
+                    list.get(0).getOutboxId() + "-" + list.get(list.size() - 1).getOutboxId();
+            repository.assign(batchKey, ids(list));
+            batches.put(batchKey, list);
+        });
+        return batches;
+    }
+
+    private void report(String batchKey, List<UsageEvent> events) {
+        UsageEvent latest = events.stream().max(Comparator.comparingLong(UsageEvent::getOutboxId)).orElseThrow();
+        String appId = latest.getAppId();
+        long added = events.stream().mapToLong(UsageEvent::getAdded).sum();
+        String billingId = null;
+        try {
+            ConfigDO config = configService.getBilling(appId);
+            billingId = config.getBillingId();
+            if(billingId == null) {
+                drop(events, "No billing id for appId: " + appId);
+                return;
+            }
+            Items found = items(billingId);
+            if(found == null) {
+                drop(events, "Missing subscription item for: " + billingId);
+                return;
+            }
+            if(latest.getActive() > 0) {
+                UsageRecord.createOnSubscriptionItem(found.mau(),
+                        new UsageRecordCreateOnSubscriptionItemParams.Builder()
+                                .setQuantity(latest.getActive())
+                                .setTimestamp(latest.getCreated().toEpochSecond())
+                                .setAction(UsageRecordCreateOnSubscriptionItemParams.Action.SET)
+                                .build(),
+                        RequestOptions.builder().setIdempotencyKey(batchKey + "-mau").build());
+            }
+            if(added > 0) {
+                UsageRecord.createOnSubscriptionItem(found.nu(),
+                        new UsageRecordCreateOnSubscriptionItemParams.Builder()
+                                .setQuantity(added)
+                                .setAction(UsageRecordCreateOnSubscriptionItemParams.Action.INCREMENT)
+                                .build(),
+                        RequestOptions.builder().setIdempotencyKey(batchKey + "-nu").build());
+            }
+            repository.delete(ids(events));
+            sent.increment();
+        } catch (StripeException e) {
+            if(billingId != null) items.invalidate(billingId);
+            Integer status = e.getStatusCode();
+            if(status == null || status == 429 || status >= 500) retry(events, e);
+            else {
+                logger.error(e.getMessage(), e);
+                drop(events, "Stripe rejected usage for appId: " + appId);
+            }
+        } catch (RuntimeException e) {
+            retry(events, e);
+        }
+    }
+
+    private Items items(String billingId) throws StripeException {
+        Items cached = items.getIfPresent(billingId);
+        if(cached != null) return cached;
+        SubscriptionListParams params = new SubscriptionListParams.Builder()
+                .setCustomer(billingId)
+                .setStatus(SubscriptionListParams.Status.ACTIVE)
+                .build();
+        List<Subscription> subscriptions = Subscription.list(params).getData();
+        if(subscriptions.isEmpty()) return null;
+        String mauItem = null;
+        String nuItem = null;
+        for(SubscriptionItem item : subscriptions.get(0).getItems().getData()) {
+            String priceId = item.getPrice().getId();
+            if(priceId.equals(mauPriceId)) mauItem = item.getId();
+            if(priceId.equals(nuPriceId)) nuItem = item.getId();
+        }
+        if(mauItem == null || nuItem == null) return null;
+        Items resolved = new Items(mauItem, nuItem);
+        items.put(billingId, resolved);
+        return resolved;
+    }
+
+    private void retry(List<UsageEvent> events, Exception e) {
+        int attempts = events.stream().mapToInt(UsageEvent::getAttempts).max().orElse(1);
+        long ceiling = Math.min(maxBackoff.toMillis(), backoff.toMillis() << Math.min(attempts - 1, 20));
+        long delay = ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+        logger.warn("Usage report failed for appId: " + events.get(0).getAppId() +
+                ", attempt " + attempts + ", retrying in " + delay + "ms", e);
+        repository.retry(OffsetDateTime.now().plus(Duration.ofMillis(delay)), ids(events));
+        retried.increment();
+    }
+
+    private void drop(List<UsageEvent> events, String message) {
+        logger.error(message);
+        repository.delete(ids(events));
+        dropped.increment();
+    }
+
+    private static List<Long> ids(List<UsageEvent> events) {
+        return events.stream().map(UsageEvent::getOutboxId).toList();
+    }
+
+    private record Items(String mau, String nu) {}
+}
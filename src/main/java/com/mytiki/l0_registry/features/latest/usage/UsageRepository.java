@@ -2,8 +2,11 @@ package com.mytiki.l0_registry.features.latest.usage;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDate;
 import java.time.ZonedDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -11,4 +14,11 @@ public interface UsageRepository extends JpaRepository<UsageDO, Long> {
     List<UsageDO> getAllByConfigAppIdAndCreatedBetween(String appId, ZonedDateTime start, ZonedDateTime end);
 
     Optional<UsageDO> getFirstByConfigAppIdOrderByCreatedDesc(String appId);
+
+    @Query("SELECT c.appId AS appId, u.total AS total, u.day AS day FROM UsageDO u JOIN u.config c " +
+            "WHERE c.appId IN :appIds AND u.day BETWEEN :start AND :end ORDER BY u.day")
+    List<UsageView> getAllByAppIds(
+            @Param("appIds") Collection<String> appIds,
+            @Param("start") LocalDate start,
+            @Param("end") LocalDate end);
 }
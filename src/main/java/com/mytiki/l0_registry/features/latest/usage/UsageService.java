@@ -3,129 +3,133 @@ package com.mytiki.l0_registry.features.latest.usage;
 import com.mytiki.l0_registry.features.latest.config.ConfigDO;
 import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.l0.auth.L0AuthAOOrg;
-import com.mytiki.l0_registry.l0.auth.L0AuthAOToken;
 import com.mytiki.l0_registry.l0.auth.L0AuthAOUser;
-import com.mytiki.l0_registry.l0.auth.L0AuthService;
-import com.stripe.exception.StripeException;
-import com.stripe.model.Subscription;
-import com.stripe.model.SubscriptionItem;
-import com.stripe.model.UsageRecord;
-import com.stripe.param.SubscriptionListParams;
-import com.stripe.param.UsageRecordCreateOnSubscriptionItemParams;
-import jakarta.transaction.Transactional;
+import com.mytiki.l0_registry.l0.auth.L0AuthCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-public class UsageService {
+public class UsageService implements AutoCloseable {
     private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
     private final UsageRepository repository;
+    private final UsageFlushRepository flushRepository;
     private final ConfigService configService;
-    private final L0AuthService l0AuthService;
+    private final L0AuthCache l0AuthCache;
     private final int minUsers;
-    private final String mauPriceId;
-    private final String nuPriceId;
+    private final Map<Key, Delta> counters = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter flushed;
 
     public UsageService(
             UsageRepository repository,
+            UsageFlushRepository flushRepository,
             ConfigService configService,
-            L0AuthService l0AuthService,
+            L0AuthCache l0AuthCache,
             int minUsers,
-            String mauPriceId,
-            String nuPriceId) {
+            Duration flushInterval,
+            MeterRegistry meterRegistry) {
         this.repository = repository;
+        this.flushRepository = flushRepository;
         this.configService = configService;
-        this.l0AuthService = l0AuthService;
+        this.l0AuthCache = l0AuthCache;
         this.minUsers = minUsers;
-        this.mauPriceId = mauPriceId;
-        this.nuPriceId = nuPriceId;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("usage-flush-"));
+        Gauge.builder("l0_registry.usage.pending", counters, Map::size)
+                .description("App-days with usage not yet flushed")
+                .register(meterRegistry);
+        this.flushed = Counter.builder("l0_registry.usage.flush")
+                .description("Usage deltas written to the database")
+                .register(meterRegistry);
+        scheduler.scheduleWithFixedDelay(this::flush,
+                flushInterval.toMillis(), flushInterval.toMillis(), TimeUnit.MILLISECONDS);
     }
 
-    @Transactional
     public void increment(String appId){
-        ZonedDateTime now = ZonedDateTime.now();
-        ZonedDateTime start = now.truncatedTo(ChronoUnit.DAYS);
-        List<UsageDO> found = repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
-        long total;
-        UsageDO update;
-        if(found.isEmpty()){
-            Optional<UsageDO> latest = repository.getFirstByConfigAppIdOrderByCreatedDesc(appId);
-            update = new UsageDO();
-            if(latest.isPresent()){
-                total = latest.get().getTotal() + 1;
-                update.setConfig(latest.get().getConfig());
-            }else{
-                update.setConfig(configService.getCreate(appId));
-                total = 1L;
-            }
-            update.setCreated(now);
-        }else{
-            update = found.get(0);
-            total = update.getTotal() + 1;
-        }
-        update.setTotal(total);
-        update.setModified(now);
-        repository.save(update);
-        report(appId, total, 1L);
+        increment(appId, 1L);
+    }
+
+    public void increment(String appId, long count){
+        record(appId, count, 0L);
     }
 
-    @Transactional
     public void decrement(String appId){
-        ZonedDateTime now = ZonedDateTime.now();
-        ZonedDateTime start = now.truncatedTo(ChronoUnit.DAYS);
-        List<UsageDO> found = repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
-        long total;
-        UsageDO update;
-        if(found.isEmpty()){
-            Optional<UsageDO> latest = repository.getFirstByConfigAppIdOrderByCreatedDesc(appId);
-            update = new UsageDO();
-            if(latest.isPresent()){
-                total = latest.get().getTotal() - 1;
-                update.setConfig(latest.get().getConfig());
-            }else{
-                update.setConfig(configService.getCreate(appId));
-                total = 0L;
+        record(appId, 0L, 1L);
+    }
+
+    public synchronized void flush(){
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for(Map.Entry<Key, Delta> entry : counters.entrySet()) {
+            Key key = entry.getKey();
+            Delta delta = entry.getValue();
+            long added = delta.added.sum();
+            long removed = delta.removed.sum();
+            if(added != 0 || removed != 0) {
+                try {
+                    ConfigDO config = configService.getCreate(key.appId());
+                    flushRepository.add(config.getConfigId(), key.day(), added - removed, added, minUsers,
+                            ZonedDateTime.now());
+                    delta.added.add(-added);
+                    delta.removed.add(-removed);
+                    flushed.increment();
+                } catch (RuntimeException e) {
+                    logger.error("Failed to flush usage for appId: " + key.appId(), e);
+                    continue;
+                }
+            }
+            if(key.day().isBefore(today) && counters.remove(key, delta)) {
+                long late = delta.added.sum();
+                long lateRemoved = delta.removed.sum();
+                if(late != 0 || lateRemoved != 0) {
+                    Delta carried = counters.computeIfAbsent(key, k -> new Delta());
+                    carried.added.add(late);
+                    carried.removed.add(lateRemoved);
+                }
             }
-            update.setCreated(now);
-        }else{
-            update = found.get(0);
-            total = update.getTotal() - 1;
         }
-        update.setTotal(total);
-        update.setModified(now);
-        repository.save(update);
-        report(appId, total, 0L);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            if(!scheduler.awaitTermination(30, TimeUnit.SECONDS)) scheduler.shutdownNow();
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        flush();
     }
 
     public List<UsageAO> get(String userId, ZonedDateTime req){
         if(req == null) req = ZonedDateTime.now();
         Set<String> apps = getApps(userId);
-        ZonedDateTime end = req.plusDays(1).truncatedTo(ChronoUnit.DAYS);
-        Map<ZonedDateTime, List<UsageAOApp>> dateMap = new HashMap<>();
-
-        for (String app : apps) {
-            List<UsageDO> days = repository.getAllByConfigAppIdAndCreatedBetween(app, end.minusMonths(1), end);
-            days.forEach(usage -> {
-                ZonedDateTime day = usage.getCreated().truncatedTo(ChronoUnit.DAYS);
-                UsageAOApp rsp = new UsageAOApp();
-                rsp.setTotal(usage.getTotal());
-                rsp.setAppId(app);
-                if(!dateMap.containsKey(day)){
-                    dateMap.put(day, List.of(rsp));
-                }else{
-                    List<UsageAOApp> appList = new ArrayList<>(dateMap.get(day));
-                    appList.add(rsp);
-                    dateMap.put(day, appList);
-                }
-            });
+        if(apps == null || apps.isEmpty()) return List.of();
+        LocalDate end = req.withZoneSameInstant(ZoneOffset.UTC).toLocalDate();
+        Map<ZonedDateTime, List<UsageAOApp>> dateMap = new LinkedHashMap<>();
+        for(UsageView usage : repository.getAllByAppIds(apps, end.plusDays(1).minusMonths(1), end)) {
+            UsageAOApp rsp = new UsageAOApp();
+            rsp.setTotal(usage.getTotal());
+            rsp.setAppId(usage.getAppId());
+            dateMap.computeIfAbsent(usage.getDay().atStartOfDay(ZoneOffset.UTC), k -> new ArrayList<>()).add(rsp);
         }
-
         return dateMap.entrySet().stream().map(entry -> {
             UsageAO rsp = new UsageAO();
             rsp.setDate(entry.getKey());
@@ -134,58 +138,33 @@ public class UsageService {
         }).toList();
     }
 
+    private void record(String appId, long added, long removed){
+        Key key = new Key(appId, LocalDate.now(ZoneOffset.UTC));
+        Runnable update = () -> {
+            Delta delta = counters.computeIfAbsent(key, k -> new Delta());
+            if(added != 0) delta.added.add(added);
+            if(removed != 0) delta.removed.add(removed);
+        };
+        if(TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else update.run();
+    }
+
     private Set<String> getApps(String userId){
-        L0AuthAOToken token = l0AuthService.getToken(List.of("auth:internal:read"));
-        L0AuthAOUser user = l0AuthService.getUser(userId, token.getAccessToken());
-        L0AuthAOOrg org = l0AuthService.getOrg(user.getOrgId(), token.getAccessToken());
+        L0AuthAOUser user = l0AuthCache.getUser(userId);
+        L0AuthAOOrg org = l0AuthCache.getOrg(user.getOrgId());
         return org.getApps();
     }
 
-    @Async
-    void report(String appId, long activeUsers, long newUsers) {
-        try {
-            if (activeUsers <= minUsers) return;
-
-            ConfigDO config = configService.getBilling(appId);
-            if (config.getBillingId() == null) {
-                logger.error("No billing id for appId: " + appId);
-                return;
-            }
-
-            SubscriptionListParams params = new SubscriptionListParams.Builder()
-                    .setCustomer(config.getBillingId())
-                    .setStatus(SubscriptionListParams.Status.ACTIVE)
-                    .build();
-            List<Subscription> subscriptions = Subscription.list(params).getData();
-            if (subscriptions.isEmpty()) {
-                logger.error("No active subscription for: " + config.getBillingId());
-                return;
-            }
-
-            String mauItem = null;
-            String nuItem = null;
-
-            for (SubscriptionItem item : subscriptions.get(0).getItems().getData()) {
-                String priceId = item.getPrice().getId();
-                if (priceId.equals(mauPriceId)) mauItem = item.getId();
-                if (priceId.equals(nuPriceId)) nuItem = item.getId();
-            }
-
-            if (mauItem == null || nuItem == null) {
-                logger.error("Missing item for: " + config.getBillingId());
-                return;
-            }
+    private record Key(String appId, LocalDate day) {}
 
-            UsageRecordCreateOnSubscriptionItemParams mauParams = new UsageRecordCreateOnSubscriptionItemParams.Builder()
-                    .setQuantity(activeUsers)
-                    .build();
-            UsageRecordCreateOnSubscriptionItemParams nuParams = new UsageRecordCreateOnSubscriptionItemParams.Builder()
-                    .setQuantity(newUsers)
-                    .build();
-            if(activeUsers > 0) UsageRecord.createOnSubscriptionItem(mauItem, mauParams, null);
-            if(newUsers > 0) UsageRecord.createOnSubscriptionItem(nuItem, nuParams, null);
-        }catch (StripeException ex){
-            logger.error(ex.getMessage(), ex);
-        }
+    private static class Delta {
+        private final LongAdder added = new LongAdder();
+        private final LongAdder removed = new LongAdder();
     }
 }
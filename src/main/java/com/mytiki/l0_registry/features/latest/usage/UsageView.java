@@ -0,0 +1,14 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.features.latest.usage;
+
+import java.time.LocalDate;
+
+public interface UsageView {
+    String getAppId();
+    Long getTotal();
+    LocalDate getDay();
+}
@@ -0,0 +1,60 @@
+package com.mytiki.l0_registry.l0.auth;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BiFunction;
+
+public class L0AuthCache {
+    private static final List<String> SCOPES = List.of("auth:internal:read");
+
+    private final L0AuthService service;
+    private final LoadingCache<String, L0AuthAOUser> users;
+    private final LoadingCache<String, L0AuthAOOrg> orgs;
+    private final LoadingCache<String, L0AuthAOApp> apps;
+
+    public L0AuthCache(
+            L0AuthService service,
+            long maxSize,
+            Duration refresh,
+            Duration expire,
+            MeterRegistry meterRegistry) {
+        this.service = service;
+        this.users = build(service::getUser, maxSize, refresh, expire, meterRegistry, "user");
+        this.orgs = build(service::getOrg, maxSize, refresh, expire, meterRegistry, "org");
+        this.apps = build(service::getApp, maxSize, refresh, expire, meterRegistry, "app");
+    }
+
+    public L0AuthAOUser getUser(String userId) {
+        return users.get(userId);
+    }
+
+    public L0AuthAOOrg getOrg(String orgId) {
+        return orgs.get(orgId);
+    }
+
+    public L0AuthAOApp getApp(String appId) {
+        return apps.get(appId);
+    }
+
+    private <T> LoadingCache<String, T> build(
+            BiFunction<String, String, T> loader,
+            long maxSize,
+            Duration refresh,
+            Duration expire,
+            MeterRegistry meterRegistry,
+            String name) {
+        LoadingCache<String, T> cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .refreshAfterWrite(refresh)
+                .expireAfterWrite(expire)
+                .recordStats()
+                .build(key -> loader.apply(key, service.getToken(SCOPES).getAccessToken()));
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "l0_registry.l0_auth." + name);
+        return cache;
+    }
+}
@@ -1,18 +1,55 @@
 package com.mytiki.l0_registry.l0.auth;
 
+import com.mytiki.l0_registry.utilities.HttpClientPool;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 
+import java.time.Duration;
+
 public class L0AuthConfig {
 
+    @Bean
+    public HttpClientPool l0AuthHttp(
+            @Value("${com.mytiki.l0_registry.l0_auth.http.max_connections}") int maxConnections,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.max_per_host}") int maxPerHost,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.connect_timeout_ms}") long connectTimeoutMs,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.read_timeout_ms}") long readTimeoutMs,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.pool_timeout_ms}") long poolTimeoutMs,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.keep_alive_seconds}") long keepAliveSeconds,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.circuit.failures}") int circuitFailures,
+            @Value("${com.mytiki.l0_registry.l0_auth.http.circuit.open_seconds}") long circuitOpenSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new HttpClientPool("l0_auth", maxConnections, maxPerHost, Duration.ofMillis(connectTimeoutMs),
+                Duration.ofMillis(readTimeoutMs), Duration.ofMillis(poolTimeoutMs), Duration.ofSeconds(keepAliveSeconds),
+                circuitFailures, Duration.ofSeconds(circuitOpenSeconds), meterRegistry);
+    }
+
     @Bean
     public L0AuthService l0AuthService(
             @Value("${com.mytiki.l0_registry.l0_auth.uri}") String uri,
             @Value("${com.mytiki.l0_registry.l0_auth.key.id}") String id,
             @Value("${com.mytiki.l0_registry.l0_auth.key.secret}") String secret,
-            @Autowired RestTemplateBuilder builder){
-        return new L0AuthService(builder.rootUri(uri).build(), id, secret);
+            @Value("${com.mytiki.l0_registry.l0_auth.token.refresh_ratio}") double tokenRefreshRatio,
+            @Value("${com.mytiki.l0_registry.l0_auth.token.skew_seconds}") long tokenSkewSeconds,
+            @Autowired RestTemplateBuilder builder,
+            @Autowired @Qualifier("l0AuthHttp") HttpClientPool http,
+            @Autowired MeterRegistry meterRegistry){
+        return new L0AuthService(builder.rootUri(uri).requestFactory(() -> http).build(), id, secret,
+                tokenRefreshRatio, Duration.ofSeconds(tokenSkewSeconds), meterRegistry);
+    }
+
+    @Bean
+    public L0AuthCache l0AuthCache(
+            @Autowired L0AuthService service,
+            @Value("${com.mytiki.l0_registry.l0_auth.cache.size}") long size,
+            @Value("${com.mytiki.l0_registry.l0_auth.cache.refresh_seconds}") long refreshSeconds,
+            @Value("${com.mytiki.l0_registry.l0_auth.cache.expire_seconds}") long expireSeconds,
+            @Autowired MeterRegistry meterRegistry){
+        return new L0AuthCache(service, size, Duration.ofSeconds(refreshSeconds), Duration.ofSeconds(expireSeconds),
+                meterRegistry);
     }
 }
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.mytiki.spring_rest_api.ApiError;
 import com.mytiki.spring_rest_api.ApiException;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.*;
 import org.springframework.util.LinkedMultiValueMap;
@@ -16,22 +17,35 @@ import org.springframework.web.client.RestTemplate;
 import java.lang.reflect.ParameterizedType;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-public class L0AuthService {
+public class L0AuthService implements AutoCloseable {
     private final RestTemplate client;
     private final String clientId;
     private final String clientSecret;
+    private final L0AuthTokenCache tokens;
 
-    public L0AuthService(RestTemplate client, String clientId, String clientSecret) {
+    public L0AuthService(
+            RestTemplate client,
+            String clientId,
+            String clientSecret,
+            double tokenRefreshRatio,
+            Duration tokenSkew,
+            MeterRegistry meterRegistry) {
         this.client = client;
         this.clientId = clientId;
         this.clientSecret = clientSecret;
+        this.tokens = new L0AuthTokenCache(this::requestToken, tokenRefreshRatio, tokenSkew, meterRegistry);
     }
 
     public L0AuthAOToken getToken(List<String> scopes){
+        return tokens.get(scopes);
+    }
+
+    private L0AuthAOToken requestToken(List<String> scopes){
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
         headers.setAccept(List.of(MediaType.APPLICATION_JSON));
@@ -106,6 +120,11 @@ public class L0AuthService {
         }
     }
 
+    @Override
+    public void close() {
+        tokens.close();
+    }
+
     private ApiException resolveOauthError(HttpClientErrorException ex){
         ParameterizedTypeReference<Map<String, String>> type = new ParameterizedTypeReference<Map<String, String>>() {};
         Map<String, String> error = ex.getResponseBodyAs(type);
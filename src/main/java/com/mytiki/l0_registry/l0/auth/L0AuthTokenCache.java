@@ -0,0 +1,129 @@
+package com.mytiki.l0_registry.l0.auth;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Function;
+
+public class L0AuthTokenCache implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private static final long RETRY_DELAY_MS = 5000;
+
+    private final Function<List<String>, L0AuthAOToken> fetcher;
+    private final double refreshRatio;
+    private final Duration skew;
+    private final Map<List<String>, Entry> entries = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final Counter refreshed;
+    private final Counter failed;
+
+    public L0AuthTokenCache(
+            Function<List<String>, L0AuthAOToken> fetcher,
+            double refreshRatio,
+            Duration skew,
+            MeterRegistry meterRegistry) {
+        this.fetcher = fetcher;
+        this.refreshRatio = refreshRatio;
+        this.skew = skew;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("l0-auth-token-"));
+        Gauge.builder("l0_registry.l0_auth.token.scopes", entries, Map::size)
+                .description("Scope sets with a cached token")
+                .register(meterRegistry);
+        this.refreshed = Counter.builder("l0_registry.l0_auth.token.refresh")
+                .description("Client credentials tokens requested from L0 Auth")
+                .register(meterRegistry);
+        this.failed = Counter.builder("l0_registry.l0_auth.token.failure")
+                .description("Client credentials token requests that failed")
+                .register(meterRegistry);
+    }
+
+    public L0AuthAOToken get(List<String> scopes) {
+        List<String> key = scopes.stream().distinct().sorted().toList();
+        Entry entry = entries.computeIfAbsent(key, Entry::new);
+        long now = System.currentTimeMillis();
+        Token current = entry.token;
+        entry.read = true;
+        if(current != null && now < current.expiresAt) {
+            if(now >= current.refreshAt && now >= entry.retryAt) entry.refresh();
+            return current.token;
+        }
+        try {
+            L0AuthAOToken token = entry.refresh().join().token;
+            entry.read = true;
+            return token;
+        } catch (CompletionException e) {
+            if(e.getCause() instanceof RuntimeException cause) throw cause;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private record Token(L0AuthAOToken token, long refreshAt, long expiresAt) {}
+
+    private class Entry {
+        private final List<String> scopes;
+        private volatile Token token;
+        private volatile long retryAt;
+        private volatile boolean read;
+        private CompletableFuture<Token> inFlight;
+
+        Entry(List<String> scopes) {
+            this.scopes = scopes;
+        }
+
+        synchronized CompletableFuture<Token> refresh() {
+            if(inFlight != null) return inFlight;
+            CompletableFuture<Token> future = CompletableFuture.supplyAsync(this::fetch, scheduler);
+            inFlight = future;
+            future.whenComplete((rsp, e) -> complete(rsp, e));
+            return future;
+        }
+
+        private void refreshIfRead() {
+            if(!read) return;
+            read = false;
+            refresh();
+        }
+
+        private Token fetch() {
+            long start = System.currentTimeMillis();
+            L0AuthAOToken rsp = fetcher.apply(scopes);
+            long lifetime = Duration.ofSeconds(rsp.getExpiresIn()).toMillis();
+            refreshed.increment();
+            return new Token(rsp,
+                    start + (long) (lifetime * refreshRatio),
+                    start + lifetime - skew.toMillis());
+        }
+
+        private synchronized void complete(Token rsp, Throwable e) {
+            inFlight = null;
+            if(e != null) {
+                failed.increment();
+                retryAt = System.currentTimeMillis() + RETRY_DELAY_MS;
+                logger.warn("Failed to refresh L0 Auth token for scopes: " + scopes, e);
+                return;
+            }
+            token = rsp;
+            long delay = rsp.refreshAt - System.currentTimeMillis();
+            if(delay > 0 && rsp.refreshAt < rsp.expiresAt) {
+                try {
+                    scheduler.schedule(this::refreshIfRead, delay, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException ignored) {}
+            }
+        }
+    }
+}
@@ -91,7 +91,11 @@ public class SecurityConfig {
                 .csrf()
                 .csrfTokenRepository(CookieCsrfTokenRepository.withHttpOnlyFalse())
                 .ignoringRequestMatchers(
-                        new AntPathRequestMatcher(ConfigController.PATH_CONTROLLER, HttpMethod.POST.name())
+                        new AntPathRequestMatcher(ConfigController.PATH_CONTROLLER, HttpMethod.POST.name()),
+                        new AntPathRequestMatcher(
+                                IdController.PATH_CONTROLLER + IdController.PATH_BATCH, HttpMethod.POST.name()),
+                        new AntPathRequestMatcher(
+                                AddressController.PATH_CONTROLLER + AddressController.PATH_BATCH, HttpMethod.POST.name())
                 ).and()
                 .authorizeHttpRequests()
                 .requestMatchers(HttpMethod.GET, ApiConstants.HEALTH_ROUTE, Constants.API_DOCS_PATH).permitAll()
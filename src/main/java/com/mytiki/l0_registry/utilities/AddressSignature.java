@@ -8,24 +8,35 @@ package com.mytiki.l0_registry.utilities;
 import com.mytiki.spring_rest_api.ApiExceptionBuilder;
 import org.springframework.http.HttpStatus;
 
+import java.util.Base64;
+
 public class AddressSignature {
     public static final String HEADER = "X-Address-Signature";
 
+    private final String header;
     private final String stringToSign;
     private final String pubKey;
     private final String signature;
 
+    private byte[] pubKeyBytes;
+
     public AddressSignature(String header) {
-        String[] split = header.split("\\.");
-        if(split.length != 3){
+        int first = header.indexOf('.');
+        int second = first < 0 ? -1 : header.indexOf('.', first + 1);
+        if(first < 1 || second < first + 2 || second >= header.length() - 1 || header.indexOf('.', second + 1) >= 0){
             throw new ApiExceptionBuilder(HttpStatus.UNAUTHORIZED)
                     .message("Invalid " + HEADER)
                     .help("Check format (stringToSign.pubKey.signature)")
                     .build();
         }
-        stringToSign = split[0];
-        pubKey = split[1];
-        signature = split[2];
+        this.header = header;
+        stringToSign = header.substring(0, first);
+        pubKey = header.substring(first + 1, second);
+        signature = header.substring(second + 1);
+    }
+
+    public String getHeader() {
+        return header;
     }
 
     public String getStringToSign() {
@@ -39,4 +50,9 @@ public class AddressSignature {
     public String getSignature() {
         return signature;
     }
+
+    public byte[] getPubKeyBytes() {
+        if(pubKeyBytes == null) pubKeyBytes = Base64.getDecoder().decode(pubKey);
+        return pubKeyBytes;
+    }
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.utilities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+public class AppBloom implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+    private final Map<String, BloomFilter> filters = new ConcurrentHashMap<>();
+    private final Set<String> saturated = ConcurrentHashMap.newKeySet();
+    private final AtomicLong bytes = new AtomicLong();
+    private final long expected;
+    private final double fpp;
+    private final long maxBytes;
+    private final Loader loader;
+    private final LongSupplier head;
+    private final AtomicLong applied = new AtomicLong(-1);
+    private final ScheduledExecutorService scheduler;
+    private final Counter skipped;
+    private final Counter stale;
+    private volatile boolean ready = false;
+    private long highWater = 0;
+    private long previous = 0;
+
+    public AppBloom(
+            String name,
+            long expected,
+            double fpp,
+            long maxBytes,
+            Duration interval,
+            Loader loader,
+            LongSupplier head,
+            MeterRegistry meterRegistry) {
+        this.expected = expected;
+        this.fpp = fpp;
+        this.maxBytes = maxBytes;
+        this.loader = loader;
+        this.head = head;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory(name + "-bloom-"));
+        String prefix = "l0_registry." + name + ".bloom";
+        Gauge.builder(prefix + ".bytes", bytes, AtomicLong::get)
+                .description("Memory held by the bloom filters")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".apps", filters, Map::size)
+                .description("Apps with a bloom filter")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".saturated", saturated, Set::size)
+                .description("Apps no longer filtered because the memory budget is spent")
+                .register(meterRegistry);
+        Gauge.builder(prefix + ".fpp", () -> fpp)
+                .description("Configured false positive probability")
+                .register(meterRegistry);
+        this.skipped = Counter.builder(prefix + ".skip")
+                .description("Lookups answered as definite misses")
+                .register(meterRegistry);
+        this.stale = Counter.builder(prefix + ".stale")
+                .description("Filter misses passed through because the filter was behind the change feed")
+                .register(meterRegistry);
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, interval.toSeconds(), TimeUnit.SECONDS);
+    }
+
+    public boolean mightContain(String appId, byte[] key) {
+        return mightContain(appId, key, this::isCurrent);
+    }
+
+    public boolean mightContain(String appId, byte[] key, BooleanSupplier current) {
+        if(!ready || saturated.contains(appId)) return true;
+        BloomFilter filter = filters.get(appId);
+        if(filter != null && filter.mightContain(key)) return true;
+        if(!current.getAsBoolean()) {
+            stale.increment();
+            return true;
+        }
+        skipped.increment();
+        return false;
+    }
+
+    public BooleanSupplier current() {
+        return new BooleanSupplier() {
+            private Boolean current;
+
+            @Override
+            public boolean getAsBoolean() {
+                if(current == null) current = isCurrent();
+                return current;
+            }
+        };
+    }
+
+    public boolean isCurrent() {
+        long seq = applied.get();
+        return ready && seq >= 0 && seq >= head.getAsLong();
+    }
+
+    public void advance(long seq) {
+        applied.accumulateAndGet(seq, Math::max);
+    }
+
+    public void put(String appId, byte[] key) {
+        if(saturated.contains(appId)) return;
+        BloomFilter filter = filters.get(appId);
+        if(filter == null) {
+            if(bytes.get() >= maxBytes) {
+                saturated.add(appId);
+                return;
+            }
+            filter = filters.computeIfAbsent(appId, k -> {
+                BloomFilter created = new BloomFilter(expected, fpp);
+                bytes.addAndGet(created.bytes());
+                return created;
+            });
+        } else if(filter.isFull() && bytes.get() + filter.growBytes() > maxBytes) {
+            saturated.add(appId);
+            if(filters.remove(appId) != null) bytes.addAndGet(-filter.bytes());
+            return;
+        }
+        bytes.addAndGet(filter.put(key));
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void refresh() {
+        try {
+            long loaded = loader.load(this, previous);
+            previous = ready ? highWater : loaded;
+            highWater = Math.max(highWater, loaded);
+            ready = true;
+        } catch (RuntimeException e) {
+            logger.error("Failed to refresh bloom filter", e);
+        }
+    }
+
+    public interface Loader {
+        long load(AppBloom bloom, long after);
+    }
+}
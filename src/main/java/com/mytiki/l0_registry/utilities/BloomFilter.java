@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.utilities;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public class BloomFilter {
+    private static final double LN2 = Math.log(2);
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    public BloomFilter(long expected, double fpp) {
+        stages.add(new Stage(expected, fpp));
+    }
+
+    public boolean mightContain(byte[] key) {
+        long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        long h2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for(Stage stage : stages)
+            if(stage.mightContain(h1, h2)) return true;
+        return false;
+    }
+
+    public long put(byte[] key) {
+        long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        long h2 = hash(key, 0xC2B2AE3D27D4EB4FL);
+        for(Stage stage : stages)
+            if(stage.mightContain(h1, h2)) return 0;
+        long allocated = 0;
+        Stage current = stages.get(stages.size() - 1);
+        if(current.isFull()) {
+            synchronized (stages) {
+                current = stages.get(stages.size() - 1);
+                if(current.isFull()) {
+                    current = current.next();
+                    stages.add(current);
+                    allocated = current.bytes();
+                }
+            }
+        }
+        current.put(h1, h2);
+        return allocated;
+    }
+
+    public boolean isFull() {
+        return stages.get(stages.size() - 1).isFull();
+    }
+
+    public long growBytes() {
+        return stages.get(stages.size() - 1).next().bytes();
+    }
+
+    public long bytes() {
+        return stages.stream().mapToLong(Stage::bytes).sum();
+    }
+
+    private static long hash(byte[] key, long seed) {
+        long h = seed ^ key.length;
+        for(byte b : key) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static class Stage {
+        private final long capacity;
+        private final double fpp;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+        private final AtomicLong count = new AtomicLong();
+
+        Stage(long capacity, double fpp) {
+            this.capacity = Math.max(capacity, 1);
+            this.fpp = fpp;
+            this.bits = Math.max(64, (long) Math.ceil(-this.capacity * Math.log(fpp) / (LN2 * LN2)));
+            this.hashes = Math.max(1, (int) Math.round((double) bits / this.capacity * LN2));
+            this.words = new AtomicLongArray((int) ((bits + 63) >>> 6));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for(int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        void put(long h1, long h2) {
+            for(int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                while(((word = words.get(index)) & mask) == 0)
+                    if(words.compareAndSet(index, word, word | mask)) break;
+            }
+            count.incrementAndGet();
+        }
+
+        boolean isFull() {
+            return count.get() >= capacity;
+        }
+
+        Stage next() {
+            return new Stage(capacity * GROWTH, fpp * TIGHTENING);
+        }
+
+        long bytes() {
+            return (long) words.length() * Long.BYTES;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.utilities;
+
+import java.time.Duration;
+
+public class CircuitBreaker {
+    private final int threshold;
+    private final long openMillis;
+    private int failures = 0;
+    private long openedAt = -1;
+    private boolean probing = false;
+
+    public CircuitBreaker(int threshold, Duration open) {
+        this.threshold = threshold;
+        this.openMillis = open.toMillis();
+    }
+
+    public synchronized boolean allow() {
+        if(openedAt < 0) return true;
+        if(!probing && System.currentTimeMillis() - openedAt >= openMillis) {
+            probing = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void success() {
+        failures = 0;
+        openedAt = -1;
+        probing = false;
+    }
+
+    public synchronized void release() {
+        probing = false;
+    }
+
+    public synchronized boolean failure() {
+        boolean wasOpen = openedAt >= 0;
+        probing = false;
+        if(wasOpen || ++failures >= threshold) {
+            openedAt = System.currentTimeMillis();
+            return !wasOpen;
+        }
+        return false;
+    }
+
+    public synchronized boolean isOpen() {
+        return openedAt >= 0;
+    }
+}
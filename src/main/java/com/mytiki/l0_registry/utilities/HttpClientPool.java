@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry.utilities;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.RequestBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+public class HttpClientPool implements ClientHttpRequestFactory, AutoCloseable {
+    private final String name;
+    private final PoolingHttpClientConnectionManager manager;
+    private final CloseableHttpClient client;
+    private final int circuitFailures;
+    private final Duration circuitOpen;
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final MeterRegistry meterRegistry;
+    private final Counter opened;
+    private final Counter rejected;
+
+    public HttpClientPool(
+            String name,
+            int maxConnections,
+            int maxPerHost,
+            Duration connectTimeout,
+            Duration readTimeout,
+            Duration poolTimeout,
+            Duration keepAlive,
+            int circuitFailures,
+            Duration circuitOpen,
+            MeterRegistry meterRegistry) {
+        this.name = name;
+        this.circuitFailures = circuitFailures;
+        this.circuitOpen = circuitOpen;
+        this.meterRegistry = meterRegistry;
+        this.manager = new PoolingHttpClientConnectionManager();
+        manager.setMaxTotal(maxConnections);
+        manager.setDefaultMaxPerRoute(maxPerHost);
+        manager.setValidateAfterInactivity((int) Math.min(keepAlive.toMillis(), 2000));
+        long keepAliveMs = keepAlive.toMillis();
+        this.client = HttpClients.custom()
+                .setConnectionManager(manager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setSocketTimeout((int) readTimeout.toMillis())
+                        .setConnectionRequestTimeout((int) poolTimeout.toMillis())
+                        .build())
+                .setKeepAliveStrategy((response, context) -> {
+                    long advertised = DefaultConnectionKeepAliveStrategy.INSTANCE
+                            .getKeepAliveDuration(response, context);
+                    return advertised > 0 ? Math.min(advertised, keepAliveMs) : keepAliveMs;
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveMs, TimeUnit.MILLISECONDS)
+                .disableCookieManagement()
+                .disableAutomaticRetries()
+                .build();
+        String prefix = "l0_registry.http.";
+        gauge(prefix + "pool.leased", "Connections in use", PoolStats::getLeased);
+        gauge(prefix + "pool.available", "Idle connections kept alive", PoolStats::getAvailable);
+        gauge(prefix + "pool.pending", "Requests waiting for a connection", PoolStats::getPending);
+        gauge(prefix + "pool.max", "Connection limit", PoolStats::getMax);
+        Gauge.builder(prefix + "circuit.open.hosts", breakers,
+                        map -> map.values().stream().filter(CircuitBreaker::isOpen).count())
+                .description("Hosts whose circuit is open")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        this.opened = Counter.builder(prefix + "circuit.open")
+                .description("Circuits tripped by consecutive failures")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        this.rejected = Counter.builder(prefix + "circuit.reject")
+                .description("Requests rejected because the circuit was open")
+                .tag("downstream", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new Request(uri, httpMethod);
+    }
+
+    @Override
+    public void close() throws IOException {
+        client.close();
+    }
+
+    private void gauge(String metric, String description, ToDoubleFunction<PoolStats> stat) {
+        Gauge.builder(metric, manager, m -> stat.applyAsDouble(m.getTotalStats()))
+                .description(description)
+                .tag("downstream", name)
+                .register(meterRegistry);
+    }
+
+    private Timer timer(String outcome) {
+        return Timer.builder("l0_registry.http.client")
+                .description("Outbound request latency")
+                .tag("downstream", name)
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    private class Request implements ClientHttpRequest {
+        private final URI uri;
+        private final HttpMethod method;
+        private final HttpHeaders headers = new HttpHeaders();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        Request(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            String host = uri.getHost() + ":" + uri.getPort();
+            CircuitBreaker breaker = breakers.computeIfAbsent(host,
+                    k -> new CircuitBreaker(circuitFailures, circuitOpen));
+            if(!breaker.allow()) {
+                rejected.increment();
+                throw new IOException("Circuit open for " + uri.getHost());
+            }
+            RequestBuilder builder = RequestBuilder.create(method.name()).setUri(uri);
+            headers.forEach((header, values) -> {
+                if(!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header) &&
+                        !HttpHeaders.TRANSFER_ENCODING.equalsIgnoreCase(header))
+                    values.forEach(value -> builder.addHeader(header, value));
+            });
+            if(body.size() > 0) builder.setEntity(new ByteArrayEntity(body.toByteArray()));
+            long start = System.nanoTime();
+            try {
+                CloseableHttpResponse response = client.execute(builder.build());
+                int status = response.getStatusLine().getStatusCode();
+                if(status >= 500) {
+                    if(breaker.failure()) opened.increment();
+                } else breaker.success();
+                timer(status / 100 + "xx").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                return new Response(response);
+            } catch (ConnectionPoolTimeoutException e) {
+                breaker.release();
+                timer("POOL_TIMEOUT").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            } catch (IOException | RuntimeException e) {
+                if(breaker.failure()) opened.increment();
+                timer("IO_ERROR").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+        }
+    }
+
+    private static class Response implements ClientHttpResponse {
+        private final CloseableHttpResponse response;
+        private HttpHeaders headers;
+
+        Response(CloseableHttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.getStatusLine().getStatusCode());
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public int getRawStatusCode() {
+            return response.getStatusLine().getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() {
+            return response.getStatusLine().getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if(headers == null) {
+                headers = new HttpHeaders();
+                for(Header header : response.getAllHeaders()) headers.add(header.getName(), header.getValue());
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            HttpEntity entity = response.getEntity();
+            return entity != null ? entity.getContent() : InputStream.nullInputStream();
+        }
+
+        @Override
+        public void close() {
+            try {
+                EntityUtils.consume(response.getEntity());
+                response.close();
+            } catch (IOException ignored) {}
+        }
+    }
+}
@@ -20,6 +20,9 @@ import java.io.IOException;
 import java.util.Base64;
 
 public class RSAFacade {
+    private static final ThreadLocal<RSADigestSigner> verifier =
+            ThreadLocal.withInitial(() -> new RSADigestSigner(new SHA256Digest()));
+
     public static RSAPublicKey decodePublicKey(byte[] publicKey) throws IOException {
         try (ASN1InputStream inputStream = new ASN1InputStream(publicKey)) {
             ASN1Sequence topLevelSeq = ASN1Sequence.getInstance(inputStream.readObject());
@@ -54,21 +57,42 @@ public class RSAFacade {
     }
 
     public static boolean verify(RSAPublicKey publicKey, String message, String signature){
-        byte[] messageBytes = Utf8.encode(message);
-        RSADigestSigner signer = new RSADigestSigner(new SHA256Digest());
-        RSAKeyParameters keyParameters =
-                new RSAKeyParameters(false, publicKey.getModulus(), publicKey.getPublicExponent());
+        return verify(toParameters(publicKey), message, signature);
+    }
+
+    public static boolean verify(RSAKeyParameters keyParameters, String message, String signature){
+        byte[] signatureBytes = Base64.getDecoder().decode(signature);
+        RSADigestSigner signer = verifier.get();
         signer.init(false, keyParameters);
-        signer.update(messageBytes, 0, messageBytes.length);
-        return signer.verifySignature(Base64.getDecoder().decode(signature));
+        if(isAscii(message)) {
+            for (int i = 0; i < message.length(); i++)
+                signer.update((byte) message.charAt(i));
+        }else {
+            byte[] messageBytes = Utf8.encode(message);
+            signer.update(messageBytes, 0, messageBytes.length);
+        }
+        return signer.verifySignature(signatureBytes);
     }
 
     public static byte[] generate() throws JOSEException {
-        RSAKey keypair = new RSAKeyGenerator(RSAKeyGenerator.MIN_KEY_SIZE_BITS).generate();
-        return keypair.toRSAPrivateKey().getEncoded();
+        return generateKey().toRSAPrivateKey().getEncoded();
+    }
+
+    public static RSAKey generateKey() throws JOSEException {
+        return new RSAKeyGenerator(RSAKeyGenerator.MIN_KEY_SIZE_BITS).generate();
     }
 
     public static RSAPublicKey toPublic(RSAPrivateKey privateKey){
         return new RSAPublicKey(privateKey.getModulus(), privateKey.getPublicExponent());
     }
+
+    public static RSAKeyParameters toParameters(RSAPublicKey publicKey){
+        return new RSAKeyParameters(false, publicKey.getModulus(), publicKey.getPublicExponent());
+    }
+
+    private static boolean isAscii(String message){
+        for (int i = 0; i < message.length(); i++)
+            if(message.charAt(i) > 0x7F) return false;
+        return true;
+    }
 }
@@ -5,16 +5,20 @@
 
 package com.mytiki.l0_registry.utilities;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.nio.charset.StandardCharsets;
-import java.security.InvalidKeyException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import org.bouncycastle.crypto.digests.SHA3Digest;
 
 public class SHA3Facade {
-    public static byte[] sha256(byte[] input) throws NoSuchAlgorithmException {
-        MessageDigest md = MessageDigest.getInstance("SHA3-256");
-        return md.digest(input);
+    private static final ThreadLocal<SHA3Digest> digest = ThreadLocal.withInitial(() -> new SHA3Digest(256));
+
+    public static byte[] sha256(byte[] input) {
+        return sha256(input, 0, input.length);
+    }
+
+    public static byte[] sha256(byte[] input, int offset, int length) {
+        SHA3Digest sha3 = digest.get();
+        byte[] out = new byte[sha3.getDigestSize()];
+        sha3.update(input, offset, length);
+        sha3.doFinal(out, 0);
+        return out;
     }
 }
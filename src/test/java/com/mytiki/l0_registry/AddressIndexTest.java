@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.features.latest.address.AddressIndex;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AddressIndexTest {
+
+    @Test
+    public void Test_PutGet_Success() {
+        AddressIndex index = new AddressIndex(16);
+        String appId = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        byte[] address = address();
+        index.put(appId, address, id);
+        assertEquals(id, index.get(appId, address));
+        assertNull(index.get(UUID.randomUUID().toString(), address));
+        assertNull(index.get(appId, address()));
+    }
+
+    @Test
+    public void Test_Remove_Success() {
+        AddressIndex index = new AddressIndex(16);
+        String appId = UUID.randomUUID().toString();
+        byte[] address = address();
+        index.put(appId, address, UUID.randomUUID().toString());
+        index.remove(appId, address);
+        assertNull(index.get(appId, address));
+        assertEquals(0, index.size());
+        String id = UUID.randomUUID().toString();
+        index.put(appId, address, id);
+        assertEquals(id, index.get(appId, address));
+    }
+
+    @Test
+    public void Test_Grow_Success() {
+        AddressIndex index = new AddressIndex(16);
+        String appId = UUID.randomUUID().toString();
+        byte[][] addresses = new byte[1000][];
+        for(int i = 0; i < addresses.length; i++) {
+            addresses[i] = address();
+            index.put(appId, addresses[i], String.valueOf(i));
+            if(i % 3 == 0) index.remove(appId, addresses[i]);
+        }
+        for(int i = 0; i < addresses.length; i++)
+            assertEquals(i % 3 == 0 ? null : String.valueOf(i), index.get(appId, addresses[i]));
+    }
+
+    @Test
+    public void Test_Snapshot_Success(@TempDir Path dir) throws IOException {
+        AddressIndex index = new AddressIndex(16);
+        String appId = UUID.randomUUID().toString();
+        String id = UUID.randomUUID().toString();
+        byte[] address = address();
+        index.put(appId, address, id);
+        index.setHighWater(42);
+        index.setSeq(7);
+        Path path = dir.resolve("address.idx");
+        index.write(path);
+
+        AddressIndex restored = new AddressIndex(16);
+        restored.read(path);
+        assertEquals(id, restored.get(appId, address));
+        assertEquals(1, restored.size());
+        assertEquals(42, restored.getHighWater());
+        assertEquals(7, restored.getSeq());
+    }
+
+    @Test
+    public void Test_Clear_Success() {
+        AddressIndex index = new AddressIndex(16);
+        String appId = UUID.randomUUID().toString();
+        byte[] address = address();
+        index.put(appId, address, UUID.randomUUID().toString());
+        index.setSeq(7);
+        index.clear();
+        assertNull(index.get(appId, address));
+        assertEquals(0, index.size());
+        assertEquals(0, index.getSeq());
+    }
+
+    private byte[] address() {
+        return SHA3Facade.sha256(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+    }
+}
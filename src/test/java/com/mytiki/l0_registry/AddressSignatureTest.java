@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.utilities.AddressSignature;
+import com.mytiki.l0_registry.utilities.RSAFacade;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
+import com.mytiki.spring_rest_api.ApiException;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.bouncycastle.crypto.signers.RSADigestSigner;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class AddressSignatureTest {
+    private String header;
+    private RSAKeyParameters keyParameters;
+
+    @BeforeAll
+    public void setup() throws JOSEException, CryptoException, IOException {
+        RSAKey keypair = new RSAKeyGenerator(RSAKeyGenerator.MIN_KEY_SIZE_BITS).generate();
+        String stringToSign = UUID.randomUUID().toString();
+        byte[] bytesToSign = stringToSign.getBytes();
+        RSADigestSigner signer = new RSADigestSigner(new SHA256Digest());
+        signer.init(true, new RSAKeyParameters(true,
+                keypair.toRSAPrivateKey().getModulus(), keypair.toRSAPrivateKey().getPrivateExponent()));
+        signer.update(bytesToSign, 0, bytesToSign.length);
+        String signature = Base64.getEncoder().encodeToString(signer.generateSignature());
+        String pubKey = Base64.getEncoder().encodeToString(keypair.toPublicKey().getEncoded());
+        header = stringToSign + "." + pubKey + "." + signature;
+        keyParameters = RSAFacade.toParameters(RSAFacade.decodePublicKey(Base64.getDecoder().decode(pubKey)));
+    }
+
+    @Test
+    public void Test_Parse_Success() {
+        AddressSignature signature = new AddressSignature(header);
+        assertEquals(header, String.join(".",
+                signature.getStringToSign(), signature.getPubKey(), signature.getSignature()));
+        assertArrayEquals(Base64.getDecoder().decode(signature.getPubKey()), signature.getPubKeyBytes());
+    }
+
+    @Test
+    public void Test_ParseBadFormat_Failure() {
+        assertThrows(ApiException.class, () -> new AddressSignature("a.b"));
+        assertThrows(ApiException.class, () -> new AddressSignature("a.b.c.d"));
+        assertThrows(ApiException.class, () -> new AddressSignature("a..c"));
+        assertThrows(ApiException.class, () -> new AddressSignature(".b.c"));
+        assertThrows(ApiException.class, () -> new AddressSignature("a.b."));
+    }
+
+    @Test
+    public void Test_Sha3_Success() throws NoSuchAlgorithmException {
+        byte[] input = header.getBytes();
+        assertArrayEquals(MessageDigest.getInstance("SHA3-256").digest(input), SHA3Facade.sha256(input));
+        assertArrayEquals(SHA3Facade.sha256(input), SHA3Facade.sha256(input));
+    }
+
+    @Test
+    public void Test_VerifyReuse_Success() {
+        AddressSignature signature = new AddressSignature(header);
+        assertTrue(RSAFacade.verify(keyParameters, signature.getStringToSign(), signature.getSignature()));
+        assertFalse(RSAFacade.verify(keyParameters, UUID.randomUUID().toString(), signature.getSignature()));
+        assertTrue(RSAFacade.verify(keyParameters, signature.getStringToSign(), signature.getSignature()));
+    }
+
+    @Test
+    public void Test_PipelineMatchesLegacy_Success() {
+        for (int i = 0; i < 10; i++) {
+            assertTrue(legacy());
+            assertTrue(pipeline());
+        }
+    }
+
+    private boolean legacy() {
+        try {
+            String[] split = header.split("\\.");
+            RSAKeyParameters key = RSAFacade.toParameters(
+                    RSAFacade.decodePublicKey(Base64.getDecoder().decode(split[1])));
+            byte[] message = split[0].getBytes();
+            RSADigestSigner signer = new RSADigestSigner(new SHA256Digest());
+            signer.init(false, key);
+            signer.update(message, 0, message.length);
+            byte[] address = MessageDigest.getInstance("SHA3-256").digest(Base64.getDecoder().decode(split[1]));
+            return signer.verifySignature(Base64.getDecoder().decode(split[2])) && address.length > 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private boolean pipeline() {
+        AddressSignature signature = new AddressSignature(header);
+        byte[] address = SHA3Facade.sha256(signature.getPubKeyBytes());
+        return RSAFacade.verify(keyParameters, signature.getStringToSign(), signature.getSignature())
+                && address.length > 0;
+    }
+}
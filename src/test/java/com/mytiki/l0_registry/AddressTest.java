@@ -5,6 +5,8 @@
 
 package com.mytiki.l0_registry;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mytiki.l0_registry.features.latest.address.AddressDO;
 import com.mytiki.l0_registry.features.latest.address.AddressRepository;
 import com.mytiki.l0_registry.features.latest.address.AddressService;
@@ -22,6 +24,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.ZonedDateTime;
 import java.util.*;
 
@@ -47,6 +52,9 @@ public class AddressTest {
     @Autowired
     private AddressRepository repository;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Test
     public void Test_SaveOne_Success(){
         ConfigDO config = configService.getCreate(UUID.randomUUID().toString());
@@ -89,4 +97,49 @@ public class AddressTest {
         }
     }
 
+    @Test
+    public void Test_GetIds_Success(){
+        ConfigDO config = configService.getCreate(UUID.randomUUID().toString());
+        IdDO idDO = new IdDO();
+        idDO.setConfig(config);
+        idDO.setCustomerId(UUID.randomUUID().toString());
+        idDO.setCreated(ZonedDateTime.now());
+        idDO = idRepository.save(idDO);
+
+        String address1 = UUID.randomUUID().toString();
+        String address2 = UUID.randomUUID().toString();
+        service.save(idDO, address1);
+        service.save(idDO, address2);
+
+        Map<String, String> rsp = service.getIds(
+                List.of(address1, address2, UUID.randomUUID().toString()), config.getAppId());
+        assertEquals(2, rsp.size());
+        assertEquals(idDO.getCustomerId(), rsp.get(address1));
+        assertEquals(idDO.getCustomerId(), rsp.get(address2));
+    }
+
+    @Test
+    public void Test_ExportResume_Success() throws IOException {
+        ConfigDO config = configService.getCreate(UUID.randomUUID().toString());
+        IdDO idDO = new IdDO();
+        idDO.setConfig(config);
+        idDO.setCustomerId(UUID.randomUUID().toString());
+        idDO.setCreated(ZonedDateTime.now());
+        idDO = idRepository.save(idDO);
+        for(int i=0; i<3; i++) service.save(idDO, UUID.randomUUID().toString());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.export(config.getAppId(), service.decodeCursor(null), out);
+        List<JsonNode> lines = new ArrayList<>();
+        for(String line : out.toString(StandardCharsets.UTF_8).split("\n"))
+            lines.add(objectMapper.readTree(line));
+        assertEquals(3, lines.size());
+        assertEquals(idDO.getCustomerId(), lines.get(0).get("id").asText());
+
+        out.reset();
+        service.export(config.getAppId(), service.decodeCursor(lines.get(0).get("cursor").asText()), out);
+        String[] resumed = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, resumed.length);
+        assertEquals(lines.get(1), objectMapper.readTree(resumed[0]));
+    }
 }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.utilities.AppBloom;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AppBloomTest {
+
+    @Test
+    public void Test_MissWhenCurrent_Success() throws InterruptedException {
+        AtomicLong head = new AtomicLong(5);
+        try (AppBloom bloom = bloom(head)) {
+            bloom.advance(5);
+            assertFalse(bloom.mightContain("app", key()));
+        }
+    }
+
+    @Test
+    public void Test_MissWhenBehind_Success() throws InterruptedException {
+        AtomicLong head = new AtomicLong(5);
+        try (AppBloom bloom = bloom(head)) {
+            bloom.advance(5);
+            head.set(6);
+            assertTrue(bloom.mightContain("app", key()));
+            bloom.advance(6);
+            assertFalse(bloom.mightContain("app", key()));
+        }
+    }
+
+    @Test
+    public void Test_Hit_Success() throws InterruptedException {
+        try (AppBloom bloom = bloom(new AtomicLong(0))) {
+            byte[] key = key();
+            bloom.put("app", key);
+            assertTrue(bloom.mightContain("app", key));
+        }
+    }
+
+    private AppBloom bloom(AtomicLong head) throws InterruptedException {
+        AppBloom bloom = new AppBloom("test", 100, 0.01, 1 << 20, Duration.ofHours(1),
+                (filter, after) -> after, head::get, new SimpleMeterRegistry());
+        while(!bloom.isReady()) Thread.sleep(10);
+        return bloom;
+    }
+
+    private byte[] key() {
+        return UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
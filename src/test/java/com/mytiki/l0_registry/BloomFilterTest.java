@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.utilities.BloomFilter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BloomFilterTest {
+
+    @Test
+    public void Test_NoFalseNegatives_Success() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        byte[][] keys = new byte[10000][];
+        for(int i = 0; i < keys.length; i++) {
+            keys[i] = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+            filter.put(keys[i]);
+        }
+        for(byte[] key : keys) assertTrue(filter.mightContain(key));
+    }
+
+    @Test
+    public void Test_FalsePositiveRate_Success() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for(int i = 0; i < 10000; i++)
+            filter.put(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        int positives = 0;
+        for(int i = 0; i < 10000; i++)
+            if(filter.mightContain(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8))) positives++;
+        assertTrue(positives < 200, "false positives: " + positives);
+    }
+
+    @Test
+    public void Test_Grow_Success() {
+        BloomFilter filter = new BloomFilter(10, 0.01);
+        long before = filter.bytes();
+        long allocated = 0;
+        for(int i = 0; i < 100; i++)
+            allocated += filter.put(UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8));
+        assertTrue(allocated > 0);
+        assertEquals(before + allocated, filter.bytes());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.features.latest.change.ChangeAORsp;
+import com.mytiki.l0_registry.features.latest.change.ChangeService;
+import com.mytiki.l0_registry.features.latest.id.IdAOReq;
+import com.mytiki.l0_registry.features.latest.id.IdService;
+import com.mytiki.l0_registry.main.App;
+import com.mytiki.l0_registry.utilities.AddressSignature;
+import com.mytiki.l0_registry.utilities.B64Url;
+import com.mytiki.l0_registry.utilities.SHA3Facade;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import org.bouncycastle.crypto.CryptoException;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.params.RSAKeyParameters;
+import org.bouncycastle.crypto.signers.RSADigestSigner;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestMethodOrder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        classes = {App.class}
+)
+@ActiveProfiles(profiles = {"ci", "dev", "local"})
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ChangeTest {
+
+    @Autowired
+    private ChangeService service;
+
+    @Autowired
+    private IdService idService;
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void Test_RegisterDelete_Success() throws JOSEException, CryptoException {
+        String appId = UUID.randomUUID().toString();
+        String cid = UUID.randomUUID().toString();
+        RSAKey keypair = new RSAKeyGenerator(RSAKeyGenerator.MIN_KEY_SIZE_BITS).generate();
+        String address = B64Url.encode(SHA3Facade.sha256(keypair.toRSAPublicKey().getEncoded()));
+        idService.register(appId, new IdAOReq(cid, address), new AddressSignature(buildSignature(keypair)), null);
+
+        List<ChangeAORsp> added = (List<ChangeAORsp>) service.poll(appId, 0, 100).getResult();
+        assertNotNull(added);
+        assertEquals(1, added.size());
+        assertEquals(ChangeService.OPERATION_ADD, added.get(0).getOperation());
+        assertEquals(cid, added.get(0).getId());
+        assertEquals(address, added.get(0).getAddress());
+
+        idService.delete(appId, cid);
+        List<ChangeAORsp> deleted = (List<ChangeAORsp>) service.poll(appId, added.get(0).getSeq(), 100).getResult();
+        assertNotNull(deleted);
+        assertEquals(1, deleted.size());
+        assertEquals(ChangeService.OPERATION_DELETE, deleted.get(0).getOperation());
+        assertTrue(deleted.get(0).getSeq() > added.get(0).getSeq());
+    }
+
+    @Test
+    public void Test_PollEmpty_Success() {
+        assertFalse(service.poll(UUID.randomUUID().toString(), 0, 100).hasResult());
+    }
+
+    private String buildSignature(RSAKey keypair) throws JOSEException, CryptoException {
+        String stringToSign = UUID.randomUUID().toString();
+        byte[] bytesToSign = stringToSign.getBytes();
+        RSADigestSigner signer = new RSADigestSigner(new SHA256Digest());
+        signer.init(true, new RSAKeyParameters(true,
+                keypair.toRSAPrivateKey().getModulus(), keypair.toRSAPrivateKey().getPrivateExponent()));
+        signer.update(bytesToSign, 0, bytesToSign.length);
+        String signature = Base64.getEncoder().encodeToString(signer.generateSignature());
+        String pubKey = Base64.getEncoder().encodeToString(keypair.toPublicKey().getEncoded());
+        return stringToSign + "." + pubKey + "." + signature;
+    }
+}
@@ -86,4 +86,15 @@ public class ConfigTest {
         assertEquals(true, update.getVerifySubject());
         assertNotEquals(orig.getModified(), update.getModified());
     }
+
+    @Test
+    public void Test_Cache_Invalidate_Success() {
+        ConfigAOReq req = new ConfigAOReq(UUID.randomUUID().toString(), null, null);
+        service.modify(req);
+        assertFalse(service.getCreate(req.getAppId()).getVerifySubject());
+
+        req.setVerifySubject(true);
+        service.modify(req);
+        assertTrue(service.getCreate(req.getAppId()).getVerifySubject());
+    }
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.utilities.CircuitBreaker;
+import com.mytiki.l0_registry.utilities.HttpClientPool;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpClientPoolTest {
+
+    @Test
+    public void Test_CircuitBreaker_Success() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(2, Duration.ofMillis(50));
+        assertFalse(breaker.failure());
+        assertTrue(breaker.allow());
+        assertTrue(breaker.failure());
+        assertFalse(breaker.allow());
+        Thread.sleep(60);
+        assertTrue(breaker.allow());
+        assertFalse(breaker.allow());
+        breaker.success();
+        assertTrue(breaker.allow());
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void Test_ReleaseProbe_Success() throws InterruptedException {
+        CircuitBreaker breaker = new CircuitBreaker(1, Duration.ofMillis(50));
+        assertTrue(breaker.failure());
+        Thread.sleep(60);
+        assertTrue(breaker.allow());
+        assertFalse(breaker.allow());
+        breaker.release();
+        assertTrue(breaker.allow());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void Test_OpenCircuit_Success() throws IOException {
+        AtomicInteger hits = new AtomicInteger();
+        AtomicInteger status = new AtomicInteger(200);
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            hits.incrementAndGet();
+            byte[] body = "ok".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status.get(), body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        try (HttpClientPool pool = new HttpClientPool("test", 4, 2, Duration.ofSeconds(1), Duration.ofSeconds(1),
+                Duration.ofSeconds(1), Duration.ofSeconds(30), 2, Duration.ofMinutes(1), new SimpleMeterRegistry())) {
+            RestTemplate client = new RestTemplate(pool);
+            String uri = "http://localhost:" + server.getAddress().getPort() + "/";
+            assertEquals("ok", client.getForObject(uri, String.class));
+            assertEquals("ok", client.getForObject(uri, String.class));
+
+            status.set(503);
+            assertThrows(HttpServerErrorException.class, () -> client.getForObject(uri, String.class));
+            assertThrows(HttpServerErrorException.class, () -> client.getForObject(uri, String.class));
+            assertThrows(ResourceAccessException.class, () -> client.getForObject(uri, String.class));
+            assertEquals(4, hits.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
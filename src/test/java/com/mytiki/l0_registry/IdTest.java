@@ -5,9 +5,15 @@
 
 package com.mytiki.l0_registry;
 
+import com.mytiki.l0_registry.features.latest.id.IdAOBatchReq;
+import com.mytiki.l0_registry.features.latest.id.IdAOBatchRsp;
 import com.mytiki.l0_registry.features.latest.id.IdAOReq;
 import com.mytiki.l0_registry.features.latest.id.IdAORsp;
+import com.mytiki.l0_registry.features.latest.id.IdDO;
+import com.mytiki.l0_registry.features.latest.id.IdRepository;
 import com.mytiki.l0_registry.features.latest.id.IdService;
+import com.mytiki.l0_registry.features.latest.id.IdView;
+import com.mytiki.l0_registry.features.latest.sign.SignRepository;
 import com.mytiki.l0_registry.main.App;
 import com.mytiki.l0_registry.utilities.AddressSignature;
 import com.mytiki.l0_registry.utilities.B64Url;
@@ -20,6 +26,8 @@ import org.bouncycastle.crypto.CryptoException;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 import org.bouncycastle.crypto.params.RSAKeyParameters;
 import org.bouncycastle.crypto.signers.RSADigestSigner;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -28,11 +36,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import jakarta.persistence.EntityManagerFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.interfaces.RSAPublicKey;
 import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,9 +57,23 @@ import static org.junit.jupiter.api.Assertions.*;
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 public class IdTest {
 
+    private static final int ITERATIONS = 200;
+
     @Autowired
     private IdService service;
 
+    @Autowired
+    private IdRepository repository;
+
+    @Autowired
+    private SignRepository signRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
     @Test
     public void Test_GetNone_Success() throws JOSEException, NoSuchAlgorithmException, CryptoException {
         RSAKey keypair = keypair();
@@ -135,6 +161,19 @@ public class IdTest {
         assertEquals(HttpStatus.UNAUTHORIZED, ex.getHttpStatus());
     }
 
+    @Test
+    public void Test_GetRepeatBadSig_Failure() throws JOSEException, CryptoException {
+        RSAKey keypair = keypair();
+        String[] signHeader = buildSignature(keypair).split("\\.");
+        String badHeader = UUID.randomUUID() + "." + signHeader[1] + "." + signHeader[2];
+        for(int i=0; i<2; i++) {
+            ApiException ex = assertThrows(ApiException.class,
+                    () -> service.get(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                            new AddressSignature(badHeader)));
+            assertEquals(HttpStatus.UNAUTHORIZED, ex.getHttpStatus());
+        }
+    }
+
     @Test
     public void Test_GetBadAddress_Failure() throws JOSEException, NoSuchAlgorithmException, CryptoException {
         String appId = UUID.randomUUID().toString();
@@ -171,6 +210,91 @@ public class IdTest {
         assertNull(rsp);
     }
 
+    @Test
+    public void Test_RegisterBatch_Success() throws JOSEException, CryptoException, NoSuchAlgorithmException {
+        String appId = UUID.randomUUID().toString();
+        String cid = UUID.randomUUID().toString();
+
+        RSAKey keypair1 = keypair();
+        String address1 = address(keypair1.toRSAPublicKey());
+        String signHeader1 = buildSignature(keypair1);
+        RSAKey keypair2 = keypair();
+        String address2 = address(keypair2.toRSAPublicKey());
+        String signHeader2 = buildSignature(keypair2);
+
+        List<IdAOBatchRsp> rsp = service.registerBatch(appId, List.of(
+                new IdAOBatchReq(cid, address1, signHeader1, null),
+                new IdAOBatchReq(cid, address2, signHeader2, null),
+                new IdAOBatchReq(UUID.randomUUID().toString(), address1, signHeader2, null)));
+
+        assertEquals(3, rsp.size());
+        assertNull(rsp.get(0).getError());
+        assertNull(rsp.get(1).getError());
+        assertNotNull(rsp.get(2).getError());
+        assertNull(rsp.get(2).getSignKey());
+        assertEquals(rsp.get(0).getSignKey(), rsp.get(1).getSignKey());
+
+        IdAORsp getRsp = service.get(appId, cid, new AddressSignature(signHeader1));
+        assertEquals(rsp.get(0).getSignKey(), getRsp.getSignKey());
+        assertEquals(2, getRsp.getAddresses().size());
+        assertTrue(getRsp.getAddresses().contains(address1));
+        assertTrue(getRsp.getAddresses().contains(address2));
+    }
+
+    @Test
+    public void Test_GetCachedInvalidate_Success() throws JOSEException, CryptoException, NoSuchAlgorithmException {
+        String appId = UUID.randomUUID().toString();
+        String cid = UUID.randomUUID().toString();
+
+        RSAKey keypair1 = keypair();
+        String address1 = address(keypair1.toRSAPublicKey());
+        String signHeader1 = buildSignature(keypair1);
+        service.register(appId, new IdAOReq(cid, address1), new AddressSignature(signHeader1), null);
+        assertEquals(1, service.get(appId, cid, new AddressSignature(signHeader1)).getAddresses().size());
+        assertNotNull(service.pubKey(appId, cid).getKey());
+
+        RSAKey keypair2 = keypair();
+        String address2 = address(keypair2.toRSAPublicKey());
+        String signHeader2 = buildSignature(keypair2);
+        service.register(appId, new IdAOReq(cid, address2), new AddressSignature(signHeader2), null);
+        IdAORsp rsp = service.get(appId, cid, new AddressSignature(signHeader2));
+        assertEquals(2, rsp.getAddresses().size());
+        assertTrue(rsp.getAddresses().contains(address1));
+
+        service.delete(appId, cid);
+        assertNull(service.pubKey(appId, cid));
+    }
+
+    @Test
+    public void Test_GetView_Statements() throws JOSEException, CryptoException, NoSuchAlgorithmException {
+        String appId = UUID.randomUUID().toString();
+        String cid = UUID.randomUUID().toString();
+        RSAKey keypair = keypair();
+        String address = address(keypair.toRSAPublicKey());
+        service.register(appId, new IdAOReq(cid, address), new AddressSignature(buildSignature(keypair)), null);
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long legacy = statements(stats, () -> transactionTemplate.execute(status -> {
+            IdDO found = repository.getByCustomerIdAndConfigAppId(cid, appId).orElseThrow();
+            found.getAddresses().size();
+            return signRepository.getFirstByIdOrderByCreatedDesc(found).orElseThrow().getPrivateKey();
+        }));
+        long view = statements(stats, () -> {
+            List<IdView> rows = repository.getView(appId, cid);
+            assertEquals(1, rows.size());
+            return rows.get(0).getSignKey();
+        });
+        assertEquals(1, view);
+        assertTrue(view < legacy);
+    }
+
+    private long statements(Statistics stats, Supplier<byte[]> op) {
+        for (int i = 0; i < ITERATIONS; i++) assertNotNull(op.get());
+        stats.clear();
+        for (int i = 0; i < ITERATIONS; i++) op.get();
+        return stats.getPrepareStatementCount() / ITERATIONS;
+    }
+
     private RSAKey keypair() throws JOSEException {
         return new RSAKeyGenerator(RSAKeyGenerator.MIN_KEY_SIZE_BITS).generate();
     }
@@ -6,7 +6,9 @@
 package com.mytiki.l0_registry;
 
 import com.mytiki.l0_registry.features.latest.config.ConfigDO;
+import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.features.latest.jwks.JwksDO;
+import com.mytiki.l0_registry.features.latest.jwks.JwksHealth;
 import com.mytiki.l0_registry.features.latest.jwks.JwksRepository;
 import com.mytiki.l0_registry.features.latest.jwks.JwksService;
 import com.mytiki.l0_registry.main.App;
@@ -21,6 +23,7 @@ import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.KeyType;
 import com.nimbusds.jwt.JWTClaimsSet;
 import org.checkerframework.checker.units.qual.A;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -35,6 +38,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.sql.Date;
 import java.text.ParseException;
+import java.time.Duration;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.util.Optional;
@@ -55,6 +59,8 @@ public class JwksTest {
     @Autowired
     private JwksRepository repository;
     @Autowired
+    private ConfigService configService;
+    @Autowired
     private TestRestTemplate testRestTemplate;
     private MockRestServiceServer mockServer;
     private final String dummyEndpoint = "http://localhost:8080/.well-known/jwks.json";
@@ -100,7 +106,7 @@ public class JwksTest {
 
     @Test
     public void Test_NoEnpoint_Success() {
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(),0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
         service.guard(UUID.randomUUID().toString(), UUID.randomUUID().toString(), configDO);
     }
@@ -111,7 +117,7 @@ public class JwksTest {
                 .andRespond(withStatus(HttpStatus.OK)
                 .contentType(MediaType.APPLICATION_JSON)
                 .body(jwksES256));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
         configDO.setJwksEndpoint(dummyEndpoint);
         JWSObject jwt = buildJwt(null,
@@ -125,7 +131,7 @@ public class JwksTest {
                 .andRespond(withStatus(HttpStatus.OK)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(jwksRS256));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
         configDO.setJwksEndpoint(dummyEndpoint);
         JWSObject jwt = buildJwt(null,
@@ -135,13 +141,14 @@ public class JwksTest {
 
     @Test
     public void Test_BadUri_Success() throws URISyntaxException, ParseException, JOSEException {
-        mockServer.expect(requestTo(new URI(dummyEndpoint)))
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(requestTo(new URI(dummyEndpoint + unique)))
                 .andRespond(withStatus(HttpStatus.OK)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(""));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
-        configDO.setJwksEndpoint(dummyEndpoint);
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
         JWSObject jwt = buildJwt(null,
                 signer(jwksRS256, "76e77cea-5ee2-478f-a16e-93eb12c1dd45"), JWSAlgorithm.RS256);
         service.guard(UUID.randomUUID().toString(), jwt.serialize(), configDO);
@@ -153,7 +160,7 @@ public class JwksTest {
                 .andRespond(withStatus(HttpStatus.OK)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(jwksRS256));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
         configDO.setJwksEndpoint(dummyEndpoint);
         configDO.setVerifySubject(true);
@@ -169,7 +176,7 @@ public class JwksTest {
                 .andRespond(withStatus(HttpStatus.OK)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(jwksRS256));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 0);
+        JwksService service = service(0);
         ConfigDO configDO = new ConfigDO();
         configDO.setJwksEndpoint(dummyEndpoint);
         configDO.setVerifySubject(true);
@@ -189,7 +196,7 @@ public class JwksTest {
                 .andRespond(withStatus(HttpStatus.OK)
                         .contentType(MediaType.APPLICATION_JSON)
                         .body(jwksES256));
-        JwksService service = new JwksService(repository, testRestTemplate.getRestTemplate(), 5);
+        JwksService service = service(5);
         ConfigDO configDO = new ConfigDO();
         configDO.setJwksEndpoint(dummyEndpoint + unique);
         JWSObject jwt = buildJwt(null,
@@ -208,6 +215,142 @@ public class JwksTest {
         assertEquals(cached.get().getModified(), cached2.get().getModified());
     }
 
+    @Test
+    public void Test_DecoderCache_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(),
+                requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jwksES256));
+        JwksService service = service(60);
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        JWSObject jwt = buildJwt(null,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256);
+        service.guard(UUID.randomUUID().toString(), jwt.serialize(), configDO);
+
+        repository.delete(repository.getByEndpoint(dummyEndpoint + unique).orElseThrow());
+        service.guard(UUID.randomUUID().toString(), jwt.serialize(), configDO);
+        assertTrue(repository.getByEndpoint(dummyEndpoint + unique).isEmpty());
+        mockServer.verify();
+    }
+
+    @Test
+    public void Test_UnknownKid_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jwksES256));
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jwksRS256));
+        JwksService service = service(3600);
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        service.guard(UUID.randomUUID().toString(), buildJwt(null,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256).serialize(), configDO);
+        service.guard(UUID.randomUUID().toString(), buildJwt(null,
+                signer(jwksRS256, "76e77cea-5ee2-478f-a16e-93eb12c1dd45"), JWSAlgorithm.RS256).serialize(), configDO);
+        mockServer.verify();
+    }
+
+    @Test
+    public void Test_CacheControl_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header("Cache-Control", "public, max-age=120")
+                        .body(jwksES256));
+        JwksService service = service(3600);
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        service.guard(UUID.randomUUID().toString(), buildJwt(null,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256).serialize(), configDO);
+
+        JwksDO saved = repository.getByEndpoint(dummyEndpoint + unique).orElseThrow();
+        assertEquals(120, Duration.between(saved.getModified(), saved.getExpires()).toSeconds());
+    }
+
+    @Test
+    public void Test_FailureBackoff_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        JwksService service = service(0);
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        String token = buildJwt(null,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256).serialize();
+        service.guard(UUID.randomUUID().toString(), token, configDO);
+        service.guard(UUID.randomUUID().toString(), token, configDO);
+        service.refreshAll();
+        mockServer.verify();
+
+        JwksHealth health = service.health().get(dummyEndpoint + unique);
+        assertEquals(1, health.getFailures());
+        assertTrue(health.isBackingOff());
+        assertNotNull(health.getLastError());
+    }
+
+    @Test
+    public void Test_TokenCache_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jwksES256));
+        JwksService service = service(3600);
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        configDO.setVerifySubject(true);
+        String subject = UUID.randomUUID().toString();
+        String token = buildJwt(subject,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256).serialize();
+        service.guard(subject, token, configDO);
+        service.guard(subject, token, configDO);
+
+        ApiException ex = assertThrows(ApiException.class,
+                () -> service.guard(UUID.randomUUID().toString(), token, configDO));
+        assertEquals(HttpStatus.UNAUTHORIZED, ex.getHttpStatus());
+
+        configDO.setVerifySubject(false);
+        service.guard(UUID.randomUUID().toString(), token, configDO);
+        mockServer.verify();
+    }
+
+    @Test
+    public void Test_FailureUsesStoredKeys_Success() throws URISyntaxException, ParseException, JOSEException {
+        String unique = UUID.randomUUID().toString();
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .body(jwksES256));
+        mockServer.expect(ExpectedCount.once(), requestTo(new URI(dummyEndpoint + unique)))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        ConfigDO configDO = new ConfigDO();
+        configDO.setJwksEndpoint(dummyEndpoint + unique);
+        service(0).guard(UUID.randomUUID().toString(), buildJwt(null,
+                signer(jwksES256, "6373263a-8761-4e07-bed0-ffa0d7783741"), JWSAlgorithm.ES256).serialize(), configDO);
+
+        JwksService service = service(0);
+        JWSObject forged = buildJwt(null,
+                signer(jwksRS256, "76e77cea-5ee2-478f-a16e-93eb12c1dd45"), JWSAlgorithm.RS256);
+        ApiException ex = assertThrows(ApiException.class,
+                () -> service.guard(UUID.randomUUID().toString(), forged.serialize(), configDO));
+        assertEquals(HttpStatus.UNAUTHORIZED, ex.getHttpStatus());
+        mockServer.verify();
+    }
+
+    private JwksService service(int cacheSeconds) {
+        return new JwksService(repository, configService, testRestTemplate.getRestTemplate(), cacheSeconds,
+                Duration.ZERO, Duration.ofDays(1), 1000, 1000, Duration.ofHours(1), Duration.ofMinutes(1),
+                Duration.ofSeconds(5), 2, Duration.ofMinutes(1), Duration.ofHours(1), new SimpleMeterRegistry());
+    }
+
     private JWSObject buildJwt(String sub, JWSSigner signer, JWSAlgorithm algorithm) throws JOSEException {
         ZonedDateTime now = ZonedDateTime.now(ZoneOffset.UTC);
         JWSObject jws = new JWSObject(
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.l0.auth.L0AuthAOToken;
+import com.mytiki.l0_registry.l0.auth.L0AuthAOUser;
+import com.mytiki.l0_registry.l0.auth.L0AuthCache;
+import com.mytiki.l0_registry.l0.auth.L0AuthService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class L0AuthCacheTest {
+
+    @Test
+    public void Test_ServeStale_Success() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean down = new AtomicBoolean(false);
+        try (L0AuthService service = new L0AuthService(new RestTemplate(), "id", "secret", 0.75,
+                Duration.ofSeconds(30), new SimpleMeterRegistry()) {
+            @Override
+            public L0AuthAOToken getToken(List<String> scopes) {
+                L0AuthAOToken token = new L0AuthAOToken();
+                token.setAccessToken("token");
+                return token;
+            }
+
+            @Override
+            public L0AuthAOUser getUser(String userId, String token) {
+                calls.incrementAndGet();
+                if(down.get()) throw new IllegalStateException("unavailable");
+                L0AuthAOUser user = new L0AuthAOUser();
+                user.setOrgId(userId + "-org");
+                return user;
+            }
+        }) {
+            L0AuthCache cache = new L0AuthCache(service, 100, Duration.ofMillis(50), Duration.ofMinutes(1),
+                    new SimpleMeterRegistry());
+            L0AuthAOUser user = cache.getUser("user");
+            assertSame(user, cache.getUser("user"));
+            assertEquals(1, calls.get());
+
+            down.set(true);
+            Thread.sleep(100);
+            assertSame(user, cache.getUser("user"));
+            Thread.sleep(100);
+            assertSame(user, cache.getUser("user"));
+            assertTrue(calls.get() > 1);
+        }
+    }
+}
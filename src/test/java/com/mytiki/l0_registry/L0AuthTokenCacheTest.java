@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) TIKI Inc.
+ * MIT license. See LICENSE file in root directory.
+ */
+
+package com.mytiki.l0_registry;
+
+import com.mytiki.l0_registry.l0.auth.L0AuthAOToken;
+import com.mytiki.l0_registry.l0.auth.L0AuthTokenCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class L0AuthTokenCacheTest {
+
+    @Test
+    public void Test_Cached_Success() {
+        AtomicInteger calls = new AtomicInteger();
+        try (L0AuthTokenCache cache = new L0AuthTokenCache(scopes -> {
+            calls.incrementAndGet();
+            return token(3600);
+        }, 0.75, Duration.ofSeconds(30), new SimpleMeterRegistry())) {
+            L0AuthAOToken first = cache.get(List.of("b", "a"));
+            assertSame(first, cache.get(List.of("a", "b")));
+            assertNotSame(first, cache.get(List.of("c")));
+            assertEquals(2, calls.get());
+        }
+    }
+
+    @Test
+    public void Test_SingleFlight_Success() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        try (L0AuthTokenCache cache = new L0AuthTokenCache(scopes -> {
+            calls.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return token(3600);
+        }, 0.75, Duration.ofSeconds(30), new SimpleMeterRegistry())) {
+            List<Thread> threads = IntStream.range(0, 8)
+                    .mapToObj(i -> new Thread(() -> cache.get(List.of("a"))))
+                    .toList();
+            threads.forEach(Thread::start);
+            Thread.sleep(100);
+            release.countDown();
+            for (Thread thread : threads) thread.join();
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    public void Test_Failure_Propagates() {
+        try (L0AuthTokenCache cache = new L0AuthTokenCache(scopes -> {
+            throw new IllegalArgumentException("denied");
+        }, 0.75, Duration.ofSeconds(30), new SimpleMeterRegistry())) {
+            assertThrows(IllegalArgumentException.class, () -> cache.get(List.of("a")));
+        }
+    }
+
+    @Test
+    public void Test_Refresh_Success() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        try (L0AuthTokenCache cache = new L0AuthTokenCache(scopes -> {
+            calls.incrementAndGet();
+            return token(1);
+        }, 0.1, Duration.ZERO, new SimpleMeterRegistry())) {
+            cache.get(List.of("a"));
+            Thread.sleep(500);
+            assertTrue(calls.get() >= 2);
+        }
+    }
+
+    @Test
+    public void Test_IdleStopsRefresh_Success() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        try (L0AuthTokenCache cache = new L0AuthTokenCache(scopes -> {
+            calls.incrementAndGet();
+            return token(1);
+        }, 0.05, Duration.ZERO, new SimpleMeterRegistry())) {
+            cache.get(List.of("a"));
+            Thread.sleep(400);
+            assertEquals(2, calls.get());
+        }
+    }
+
+    private static L0AuthAOToken token(long expiresIn) {
+        L0AuthAOToken token = new L0AuthAOToken();
+        token.setAccessToken(UUID.randomUUID().toString());
+        token.setExpiresIn(expiresIn);
+        return token;
+    }
+}
@@ -9,12 +9,18 @@ import com.mytiki.l0_registry.features.latest.config.*;
 import com.mytiki.l0_registry.features.latest.id.IdDO;
 import com.mytiki.l0_registry.features.latest.id.IdRepository;
 import com.mytiki.l0_registry.features.latest.id.IdService;
+import com.mytiki.l0_registry.features.latest.sign.SignDO;
+import com.mytiki.l0_registry.features.latest.sign.SignKey;
+import com.mytiki.l0_registry.features.latest.sign.SignPool;
 import com.mytiki.l0_registry.features.latest.sign.SignRepository;
 import com.mytiki.l0_registry.features.latest.sign.SignService;
 import com.mytiki.l0_registry.main.App;
 import com.mytiki.l0_registry.utilities.B64Url;
 import com.mytiki.l0_registry.utilities.RSAFacade;
 import com.mytiki.l0_registry.utilities.SHA3Facade;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.jwk.JWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
@@ -23,8 +29,10 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 import java.time.ZonedDateTime;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.UUID;
 
@@ -91,4 +99,44 @@ public class SignTest {
         assertNotEquals(orig, latest);
         assertEquals(cycled, latest);
     }
+
+    @Test
+    public void Test_PoolFallback_Success() throws JOSEException, IOException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        try (SignPool pool = new SignPool(1, 1, meterRegistry)) {
+            pool.close();
+            SignKey first = pool.take();
+            SignKey second = pool.take();
+            assertNotNull(RSAFacade.decodePrivateKey(first.getPrivateKey()));
+            assertNotNull(RSAFacade.decodePrivateKey(second.getPrivateKey()));
+            assertFalse(Arrays.equals(first.getPrivateKey(), second.getPrivateKey()));
+            assertTrue(meterRegistry.get("l0_registry.sign.pool.fallback").counter().count() >= 1);
+        }
+    }
+
+    @Test
+    public void Test_StoredPublicKey_Success() throws JOSEException, IOException {
+        SignKey generated = SignKey.generate();
+        SignKey derived = SignKey.derive(generated.getPrivateKey());
+        assertArrayEquals(derived.getPublicKey(), generated.getPublicKey());
+        assertEquals(derived.getThumbprint(), generated.getThumbprint());
+    }
+
+    @Test
+    public void Test_Jwks_Success(){
+        ConfigDO config = configService.getCreate(UUID.randomUUID().toString());
+        IdDO idDO = new IdDO();
+        idDO.setConfig(config);
+        idDO.setCustomerId(UUID.randomUUID().toString());
+        idDO.setCreated(ZonedDateTime.now());
+        idDO = idRepository.save(idDO);
+        service.cycle(idDO);
+        service.cycle(idDO);
+
+        JWKSet jwks = service.getJwks(config.getAppId(), idDO.getCustomerId(), 5);
+        assertEquals(2, jwks.getKeys().size());
+        SignDO latest = repository.getFirstByIdOrderByCreatedDesc(idDO).orElseThrow();
+        assertEquals(latest.getThumbprint(), jwks.getKeys().get(0).getKeyID());
+        assertEquals(Base64.getEncoder().encodeToString(latest.getPublicKey()), service.getPublicKey(idDO));
+    }
 }
@@ -4,19 +4,27 @@ import com.mytiki.l0_registry.features.latest.config.ConfigService;
 import com.mytiki.l0_registry.features.latest.usage.UsageDO;
 import com.mytiki.l0_registry.features.latest.usage.UsageRepository;
 import com.mytiki.l0_registry.features.latest.usage.UsageService;
+import com.mytiki.l0_registry.features.latest.usage.UsageView;
 import com.mytiki.l0_registry.main.App;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInstance;
 import org.junit.jupiter.api.TestMethodOrder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -39,6 +47,12 @@ public class UsageTest {
     @Autowired
     private ConfigService configService;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${com.mytiki.l0_registry.usage.min_users}")
+    private int minUsers;
+
     @Test
     public void Test_IncrementNone_Success(){
         ZonedDateTime now = ZonedDateTime.now();
@@ -46,6 +60,7 @@ public class UsageTest {
 
         String appId = UUID.randomUUID().toString();
         service.increment(appId);
+        service.flush();
 
         List<UsageDO> usage =
                 repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
@@ -68,6 +83,7 @@ public class UsageTest {
         for(int i=0; i<iterations; i++) {
             service.increment(appId);
         }
+        service.flush();
 
         List<UsageDO> usage =
                 repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
@@ -89,11 +105,13 @@ public class UsageTest {
 
         usage.setConfig(configService.getCreate(appId));
         usage.setTotal(1L);
+        usage.setDay(now.minusDays(3).toLocalDate());
         usage.setCreated(now.minusDays(3));
         usage.setModified(now.minusDays(3));
         repository.save(usage);
 
         service.increment(appId);
+        service.flush();
 
         ZonedDateTime start = now.truncatedTo(ChronoUnit.DAYS);
         List<UsageDO> today =
@@ -116,11 +134,13 @@ public class UsageTest {
 
         usage.setConfig(configService.getCreate(appId));
         usage.setTotal(1L);
+        usage.setDay(now.minusDays(3).toLocalDate());
         usage.setCreated(now.minusDays(3));
         usage.setModified(now.minusDays(3));
         repository.save(usage);
 
         service.decrement(appId);
+        service.flush();
 
         ZonedDateTime start = now.truncatedTo(ChronoUnit.DAYS);
         List<UsageDO> today =
@@ -145,6 +165,7 @@ public class UsageTest {
             service.increment(appId);
         }
         service.decrement(appId);
+        service.flush();
 
         List<UsageDO> usage =
                 repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
@@ -156,4 +177,52 @@ public class UsageTest {
         assertNotNull(usage.get(0).getModified());
         assertNotNull(usage.get(0).getCreated());
     }
+
+    @Test
+    public void Test_IncrementConcurrent_Success(){
+        ZonedDateTime start = ZonedDateTime.now().truncatedTo(ChronoUnit.DAYS);
+
+        String appId = UUID.randomUUID().toString();
+        int iterations = 1000;
+        IntStream.range(0, iterations).parallel().forEach(i -> {
+            service.increment(appId);
+            if(i % 100 == 0) service.flush();
+        });
+        service.flush();
+
+        List<UsageDO> usage =
+                repository.getAllByConfigAppIdAndCreatedBetween(appId, start, start.plusDays(1));
+
+        assertEquals(1, usage.size());
+        assertEquals(iterations, usage.get(0).getTotal());
+    }
+
+    @Test
+    public void Test_FlushOutbox_Success(){
+        String appId = UUID.randomUUID().toString();
+        long configId = configService.getCreate(appId).getConfigId();
+        service.increment(appId, minUsers);
+        service.flush();
+        service.increment(appId, 2);
+        service.increment(appId);
+        service.flush();
+
+        List<Long> added = jdbcTemplate.queryForList(
+                "SELECT added FROM usage_outbox WHERE config_id = ? ORDER BY outbox_id", Long.class, configId);
+        assertEquals(List.of(3L), added);
+    }
+
+    @Test
+    public void Test_GetAllByAppIds_Success(){
+        LocalDate start = LocalDate.now(ZoneOffset.UTC);
+        List<String> appIds = List.of(UUID.randomUUID().toString(), UUID.randomUUID().toString());
+        appIds.forEach(appId -> service.increment(appId));
+        service.flush();
+
+        List<UsageView> usage = repository.getAllByAppIds(appIds, start, start);
+
+        assertEquals(2, usage.size());
+        assertEquals(Set.copyOf(appIds), usage.stream().map(UsageView::getAppId).collect(Collectors.toSet()));
+        usage.forEach(view -> assertEquals(1, view.getTotal()));
+    }
 }